@@ -26,6 +26,9 @@ class BDFileSystemImpl extends BDFileSystem {
 
     /* Different in SE */
     public boolean checkAccess(File f, boolean write) {
+        if (!write && isMountedFile(f)) {
+            return true;
+        }
         return fs.checkAccess(f, write);
     }
 
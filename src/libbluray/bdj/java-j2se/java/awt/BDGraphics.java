@@ -29,9 +29,11 @@ import org.videolan.Logger;
 
 class BDGraphics extends BDGraphicsBase {
     private Paint paint;
+    private RenderingHints hints = new RenderingHints(null);
 
     BDGraphics(BDGraphics g) {
         super(g);
+        hints = (RenderingHints)g.hints.clone();
     }
 
     BDGraphics(BDRootWindow window) {
@@ -101,24 +103,41 @@ class BDGraphics extends BDGraphicsBase {
         logger.unimplemented("drawGlyphVector");
     }
     public void setRenderingHints(java.util.Map hints) {
-        logger.unimplemented("setRenderingHints");
+        this.hints.clear();
+        addRenderingHints(hints);
     }
     public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
-        logger.unimplemented("setRenderingHint");
+        hints.put(hintKey, hintValue);
+        updateScaleQuality();
     }
     public void addRenderingHints(java.util.Map hints) {
-        logger.unimplemented("addRenderingHints");
+        this.hints.putAll(hints);
+        updateScaleQuality();
     }
     public Object getRenderingHint(RenderingHints.Key hintKey) {
-        logger.unimplemented("getRenderingHint");
-        return null;
+        return hints.get(hintKey);
     }
     public RenderingHints getRenderingHints() {
-        logger.unimplemented("getRenderingHints");
-        return null;
+        return (RenderingHints)hints.clone();
+    }
+
+    /* image scaling algorithm follows interpolation and rendering hints */
+    private void updateScaleQuality() {
+        Object interpolation = hints.get(RenderingHints.KEY_INTERPOLATION);
+        Object rendering = hints.get(RenderingHints.KEY_RENDERING);
+        if (interpolation == RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR) {
+            setScaleQuality(ImageScaler.NEAREST);
+        } else if (interpolation != null) {
+            setScaleQuality(ImageScaler.BILINEAR);
+        } else if (rendering == RenderingHints.VALUE_RENDER_QUALITY) {
+            setScaleQuality(ImageScaler.AREA);
+        } else if (rendering == RenderingHints.VALUE_RENDER_SPEED) {
+            setScaleQuality(ImageScaler.NEAREST);
+        } else {
+            setScaleQuality(-1);
+        }
     }
 
-
     public void clip(Shape s) {
         setClip(s);
     }
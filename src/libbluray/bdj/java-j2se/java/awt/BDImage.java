@@ -25,4 +25,8 @@ class BDImage extends BDImageBase implements BufferedImagePeer {
     BDImage(Component component, int width, int height, GraphicsConfiguration gc) {
         super(component, width, height, gc);
     }
+
+    BDImage(BDImageBase parent, int x, int y, int width, int height) {
+        super(parent, x, y, width, height);
+    }
 }
@@ -26,6 +26,9 @@ class BDFileSystemImpl extends BDFileSystem {
 
     /* different in ME */
     public boolean checkAccess(File f, int access) {
+        if (access == ACCESS_READ && isMountedFile(f)) {
+            return true;
+        }
         return fs.checkAccess(f, access);
     }
 
@@ -20,6 +20,7 @@
 package org.dvb.ui;
 
 import java.awt.Color;
+import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Font;
 import java.awt.FontMetrics;
@@ -327,13 +328,22 @@ public class DVBGraphicsImpl extends DVBGraphics {
 
     public DVBAlphaComposite getDVBComposite()
     {
-        return alphaComposite;
+        Composite comp = gfx.getComposite();
+        if (!(comp instanceof AlphaComposite))
+            return null;
+        return DVBAlphaComposite.getInstance(
+                        ((AlphaComposite)comp).getRule(),
+                        ((AlphaComposite)comp).getAlpha());
     }
 
     public void setDVBComposite(DVBAlphaComposite comp)
             throws UnsupportedDrawingOperationException
     {
-        this.alphaComposite = comp;
+        if ((comp.getRule() < DVBAlphaComposite.CLEAR) ||
+            (comp.getRule() > DVBAlphaComposite.DST_OUT))
+            throw new UnsupportedDrawingOperationException("Unsupported composition rule");
+
+        gfx.setComposite(AlphaComposite.getInstance(comp.getRule(), comp.getAlpha()));
     }
 
     /*
@@ -509,6 +519,4 @@ public class DVBGraphicsImpl extends DVBGraphics {
     {
         gfx.translate(tx, ty);
     }
-
-    private DVBAlphaComposite alphaComposite = DVBAlphaComposite.Clear;
 }
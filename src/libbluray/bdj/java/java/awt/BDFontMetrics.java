@@ -20,17 +20,25 @@
 package java.awt;
 
 import java.io.*;
+import java.lang.ref.WeakReference;
 import java.security.*;
 import java.util.*;
 
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
 public class BDFontMetrics extends FontMetrics {
     static final long serialVersionUID = -4956160226949100590L;
 
+    private static final Logger logger = Logger.getLogger(BDFontMetrics.class.getName());
+
     private static long ftLib = 0;
     private static Map fontNameMap;
 
     private static native long initN();
     private static native void destroyN(long ftLib);
+    private static native long loadFaceN(long ftLib, String fontName);
+    private static native void destroyFaceN(long ftFace);
 
     public synchronized static void init() {
         //System.loadLibrary("bluray");
@@ -92,35 +100,196 @@ public class BDFontMetrics extends FontMetrics {
                 e.printStackTrace();
             }
         }
+        it = releasedMap.values().iterator();
+        while (it.hasNext()) {
+            BDFontMetrics fm = (BDFontMetrics)((WeakReference)it.next()).get();
+            it.remove();
+            if (fm != null) {
+                fm.destroy();
+            }
+        }
+        /* sizes that are still waiting for finalization are freed with the face */
+        it = fontFaceMap.values().iterator();
+        while (it.hasNext()) {
+            FontFace face = (FontFace)it.next();
+            it.remove();
+            synchronized (face) {
+                destroyFaceN(face.ftFace);
+                face.ftFace = 0;
+            }
+        }
+        cacheBytes = 0;
         destroyN(BDFontMetrics.ftLib);
         ftLib = 0;
     }
 
-    /** A map which maps a native font name and size to a font metrics object. This is used
-     as a cache to prevent loading the same fonts multiple times. */
-    private static Map fontMetricsMap = new HashMap();
+    /*
+     * Font cache.
+     *
+     * Each font file is opened only once (FontFace). Each font size has its own
+     * BDFontMetrics object with FreeType size object of the shared face.
+     * Font metrics are referenced by the xlets that have used them. When there
+     * are no references, metrics can be dropped from the cache in LRU order when
+     * memory used by fonts exceeds bluray.memory.font_cache.
+     * Dropped metrics may still be used by Graphics objects and components:
+     * FreeType size is freed only when the metrics object is finalized, and
+     * face when there are no sizes left.
+     */
+
+    private static class FontFace {
+        String path;
+        long   ftFace;
+        int    sizes;     /* number of live BDFontMetrics using this face */
+        int    cached;    /* number of BDFontMetrics in cache using this face */
+        long   bytes;     /* estimated memory usage */
+    }
+
+    /* estimated memory usage of one font size (metrics, size object, width tables) */
+    private static final long SIZE_BYTES = 8 * 1024;
+
+    private static final long CACHE_LIMIT = getCacheLimit();
+
+    /** A map which maps a native font name and size to a font metrics object, in LRU order.
+     This is used as a cache to prevent loading the same fonts multiple times. */
+    private static Map fontMetricsMap = new LinkedHashMap(16, 0.75f, true);
+    /* metrics dropped from cache -> WeakReference. Re-used if still alive. */
+    private static Map releasedMap = new HashMap();
+    /* font file path -> FontFace */
+    private static Map fontFaceMap = new HashMap();
+    private static long cacheBytes = 0;
 
     /** Gets the BDFontMetrics object for the supplied font. This method caches font metrics
      to ensure native fonts are not loaded twice for the same font. */
     static synchronized BDFontMetrics getFontMetrics(Font font) {
-        /* See if metrics has been stored in font already. */
-        BDFontMetrics fm = null;
-        //BDFontMetrics fm = (BDFontMetrics)font.metrics;
-        //if (fm == null) {
-            /* See if a font metrics of the same native name and size has already been loaded.
-             If it has then we use that one. */
-            String nativeName = (String)fontNameMap.get(font.getName().toLowerCase() + "." + font.getStyle());
-            if (nativeName == null)
-                nativeName = (String)fontNameMap.get("default." + font.getStyle());
-            String key = nativeName + "." + font.getSize();
-            fm = (BDFontMetrics)fontMetricsMap.get(key);
-            if (fm == null)
-                fontMetricsMap.put(key, fm = new BDFontMetrics(font, nativeName));
-            //font.metrics = fm;
-        //}
+        /* See if a font metrics of the same native name and size has already been loaded.
+         If it has then we use that one. */
+        String nativeName = (String)fontNameMap.get(font.getName().toLowerCase() + "." + font.getStyle());
+        if (nativeName == null)
+            nativeName = (String)fontNameMap.get("default." + font.getStyle());
+        String key = nativeName + "." + font.getSize();
+        BDFontMetrics fm = (BDFontMetrics)fontMetricsMap.get(key);
+        if (fm == null) {
+            WeakReference ref = (WeakReference)releasedMap.remove(key);
+            if (ref != null) {
+                fm = (BDFontMetrics)ref.get();
+            }
+            if (fm == null) {
+                FontFace face = getFontFace(nativeName);
+                fm = new BDFontMetrics(font, face, key);
+                face.sizes++;
+            }
+            addCached(fm);
+        }
+
+        BDJXletContext ctx = BDJXletContext.getCurrentContext();
+        if (ctx != null && !fm.owners.contains(ctx)) {
+            fm.owners.add(ctx);
+        }
+
+        /* never drop metrics that are returned to caller */
+        evict(fm);
         return fm;
     }
 
+    /* drop references of terminated xlet */
+    static synchronized void releaseContext(BDJXletContext ctx) {
+        Iterator it = fontMetricsMap.values().iterator();
+        while (it.hasNext()) {
+            BDFontMetrics fm = (BDFontMetrics)it.next();
+            fm.owners.remove(ctx);
+        }
+        evict(null);
+    }
+
+    private static FontFace getFontFace(String path) {
+        FontFace face = (FontFace)fontFaceMap.get(path);
+        if (face != null) {
+            return face;
+        }
+
+        face = new FontFace();
+        face.path = path;
+        face.ftFace = loadFaceN(ftLib, path);
+        if (face.ftFace == 0)
+            throw new AWTError("font face:" + path + " not loaded");
+        face.bytes = getFileSize(path);
+        fontFaceMap.put(path, face);
+        return face;
+    }
+
+    private static void addCached(BDFontMetrics fm) {
+        fontMetricsMap.put(fm.key, fm);
+        if (fm.face.cached++ == 0) {
+            cacheBytes += fm.face.bytes;
+        }
+        cacheBytes += SIZE_BYTES;
+    }
+
+    /*
+     * drop least recently used font sizes that are not referenced by any xlet.
+     * Dropped metrics stay valid until they are garbage collected.
+     */
+    private static void evict(BDFontMetrics keep) {
+        Iterator it = fontMetricsMap.values().iterator();
+        while (cacheBytes > CACHE_LIMIT && it.hasNext()) {
+            BDFontMetrics fm = (BDFontMetrics)it.next();
+            if (fm == keep || !fm.owners.isEmpty()) {
+                continue;
+            }
+            it.remove();
+            releasedMap.put(fm.key, new WeakReference(fm));
+
+            cacheBytes -= SIZE_BYTES;
+            if (--fm.face.cached <= 0) {
+                cacheBytes -= fm.face.bytes;
+            }
+        }
+    }
+
+    /* called when FreeType size of finalized metrics has been freed */
+    private static synchronized void sizeDestroyed(FontFace face, String key) {
+        WeakReference ref = (WeakReference)releasedMap.get(key);
+        if (ref != null && ref.get() == null) {
+            releasedMap.remove(key);
+        }
+
+        if (--face.sizes <= 0 && face.cached <= 0) {
+            if (fontFaceMap.get(face.path) == face) {
+                fontFaceMap.remove(face.path);
+            }
+            synchronized (face) {
+                if (face.ftFace != 0) {
+                    destroyFaceN(face.ftFace);
+                    face.ftFace = 0;
+                }
+            }
+        }
+    }
+
+    private static long getFileSize(final String path) {
+        Long size = (Long)AccessController.doPrivileged(new PrivilegedAction() {
+                public Object run() {
+                    return new Long(new File(path).length());
+                }
+            }
+        );
+        return size.longValue();
+    }
+
+    /* font cache limit from bluray.memory.font_cache (KiB) */
+    private static long getCacheLimit() {
+        long limit = 4096;
+        try {
+            String prop = System.getProperty("bluray.memory.font_cache");
+            if (prop != null) {
+                limit = Long.parseLong(prop);
+            }
+        } catch (Exception e) {
+            logger.error("invalid bluray.memory.font_cache: " + e);
+        }
+        return limit * 1024;
+    }
+
     static synchronized String[] getFontList() {
         init();
 
@@ -159,41 +328,142 @@ public class BDFontMetrics extends FontMetrics {
         fontNameMap.remove(name);
     }
 
-    private long ftFace;
+    private FontFace face;
+    private String key;
+    private long ftSize;
+    /* xlets using this font (BDJXletContext) */
+    private ArrayList owners = new ArrayList(1);
     private int ascent;
     private int descent;
     private int leading;
     private int maxAdvance;
 
-    /** Cache of first 256 Unicode characters as these map to ASCII characters and are often used. */
-    private int[] widths;
+    private boolean hasKerning;
+
+    /*
+     * Character widths, in pages of 256 characters.
+     * Pages are loaded on demand and never modified after they have been
+     * published, so readers do not need locking. Page table is replaced
+     * (copy-on-write) when a page is added.
+     */
+    private volatile int[][] widthPages = new int[256][];
+
+    /*
+     * Kerning of character pairs (open addressing hash table).
+     * Entry is (left << 48 | right << 32 | kerning), EMPTY_PAIR marks unused slot.
+     * Table is replaced (copy-on-write) when new pairs are added.
+     */
+    private volatile long[] kerningTable = null;
+    private int kerningCount = 0;
+
+    private static final long EMPTY_PAIR = -1L;
+    private static final int  MAX_KERNING_PAIRS = 4096;
+
+    /** Cache of rendered glyphs */
+    private GlyphCache glyphCache = new GlyphCache();
 
     /**
      * Creates a font metrics for the supplied font. To get a font metrics for a font
      * use the static method getFontMetrics instead which does caching.
      */
-    private BDFontMetrics(Font font, String nativeName) {
+    private BDFontMetrics(Font font, FontFace face, String key) {
         super(font);
 
-        ftFace = loadFontN(ftLib, nativeName, font.getSize());
-        if (ftFace == 0)
-            throw new AWTError("font face:" + nativeName + " not loaded");
+        this.face = face;
+        this.key = key;
+        synchronized (face) {
+            ftSize = newSizeN(face.ftFace, font.getSize());
+        }
+        if (ftSize == 0)
+            throw new AWTError("font size:" + face.path + " " + font.getSize() + " not loaded");
 
-        /* Cache first 256 char widths for use by the getWidths method and for faster metric
-         calculation as they are commonly used (ASCII) characters. */
-        widths = new int[256];
-        for (int i = 0; i < 256; i++)
-            widths[i] = charWidthN(ftFace, (char)i);
+        /* ASCII and Latin-1 are always needed */
+        loadWidthPage(0);
     }
 
-    private native long loadFontN(long ftLib, String fontName, int size);
-    private native void destroyFontN(long ftFace);
-    private native int charWidthN(long ftFace, char c);
-    private native int stringWidthN(long ftFace, String string);
-    private native int charsWidthN(long ftFace, char chars[], int offset, int len);
+    /* FreeType face is shared by all sizes: native calls must be synchronized with the face */
+    private native long newSizeN(long ftFace, int size);
+    private static native void destroySizeN(long ftSize);
+    private static native void charWidthsN(long ftSize, int first, int count, int[] widths);
+    private static native void kerningN(long ftSize, char[] pairs, int count, int[] kerning);
+    private static native byte[] loadGlyphsN(long ftSize, char[] chars, int count, int[] metrics);
 
-    protected synchronized void drawString(BDGraphics g, String string, int x, int y, int rgb) {
-        g.drawStringN(ftFace, string, x, y, rgb);
+    /* loadGlyphsN() metrics for each glyph: left, top, width, height, advance, mask offset */
+    private static final int GLYPH_METRICS = 6;
+
+    /**
+     * Get rendered glyphs for all characters in string.
+     * Glyphs are rendered only once and cached. All missing glyphs
+     * are rendered with single native call.
+     */
+    GlyphCache.Glyph[] getGlyphs(String string) {
+        int length = string.length();
+        GlyphCache.Glyph[] glyphs = new GlyphCache.Glyph[length];
+        char[] missing = null;
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            glyphs[i] = glyphCache.get(c);
+            if (glyphs[i] == null) {
+                if (missing == null) {
+                    missing = new char[length - i];
+                }
+                int j;
+                for (j = 0; j < count && missing[j] != c; j++) ;
+                if (j == count) {
+                    missing[count++] = c;
+                }
+            }
+        }
+
+        if (count > 0) {
+            GlyphCache.Glyph[] loaded = loadGlyphs(missing, count);
+            for (int i = 0; i < length; i++) {
+                if (glyphs[i] == null) {
+                    char c = string.charAt(i);
+                    for (int j = 0; j < count; j++) {
+                        if (missing[j] == c) {
+                            glyphs[i] = loaded[j];
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return glyphs;
+    }
+
+    private GlyphCache.Glyph[] loadGlyphs(char[] chars, int count) {
+        GlyphCache.Glyph[] glyphs = new GlyphCache.Glyph[count];
+        int[] metrics = new int[count * GLYPH_METRICS];
+        byte[] masks = null;
+
+        synchronized (face) {
+            if (ftSize != 0) {
+                masks = loadGlyphsN(ftSize, chars, count, metrics);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            GlyphCache.Glyph glyph = new GlyphCache.Glyph();
+            glyph.c = chars[i];
+            if (masks != null) {
+                int m = i * GLYPH_METRICS;
+                glyph.left    = metrics[m];
+                glyph.top     = metrics[m + 1];
+                glyph.width   = metrics[m + 2];
+                glyph.height  = metrics[m + 3];
+                glyph.advance = metrics[m + 4];
+                glyph.mask    = new byte[glyph.width * glyph.height];
+                System.arraycopy(masks, metrics[m + 5], glyph.mask, 0, glyph.mask.length);
+            }
+            glyphCache.put(glyph);
+            glyphs[i] = glyph;
+        }
+
+        return glyphs;
     }
 
     public int getAscent() {
@@ -213,26 +483,48 @@ public class BDFontMetrics extends FontMetrics {
     }
 
     /**
-     * Fast lookup of first 256 chars as these are always the same eg. ASCII charset.
+     * Return the width of the specified character in this Font.
      */
-    public synchronized int charWidth(char c) {
-        if (c < 256)
-            return widths[c];
-        return charWidthN(ftFace, c);
+    public int charWidth(char c) {
+        int[] page = widthPages[c >> 8];
+        if (page == null) {
+            page = loadWidthPage(c >> 8);
+        }
+        return page[c & 0xff];
     }
 
     /**
      * Return the width of the specified string in this Font.
      */
-    public synchronized int stringWidth(String string) {
-        return stringWidthN(ftFace, string);
+    public int stringWidth(String string) {
+        int length = string.length();
+        if (length < 1) {
+            return 0;
+        }
+        char[] chars = new char[length];
+        string.getChars(0, length, chars, 0);
+        return charsWidth(chars, 0, length);
     }
 
     /**
      * Return the width of the specified char[] in this Font.
      */
-    public synchronized int charsWidth(char chars[], int offset, int length) {
-        return charsWidthN(ftFace, chars, offset, length);
+    public int charsWidth(char chars[], int offset, int length) {
+        int[][] pages = widthPages;
+        int width = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            int[] page = pages[c >> 8];
+            if (page == null) {
+                page = loadWidthPage(c >> 8);
+                pages = widthPages;
+            }
+            width += page[c & 0xff];
+        }
+        if (hasKerning && length > 1) {
+            width += getKerning(chars, offset, length, null);
+        }
+        return width;
     }
 
     /**
@@ -240,20 +532,204 @@ public class BDFontMetrics extends FontMetrics {
      */
     public int[] getWidths() {
         int[] newWidths = new int[256];
-        System.arraycopy(widths, 0, newWidths, 0, 256);
+        System.arraycopy(widthPages[0], 0, newWidths, 0, 256);
         return newWidths;
     }
 
-    private void destroy() {
-        if (ftFace != 0) {
-            destroyFontN(ftFace);
-            ftFace = 0;
+    /*
+     * Kerning between characters i and i + 1 of string.
+     * Returns null if font does not have kerning information.
+     */
+    int[] getKerning(String string) {
+        int length = string.length();
+        if (!hasKerning || length < 2) {
+            return null;
+        }
+        char[] chars = new char[length];
+        string.getChars(0, length, chars, 0);
+        int[] kerning = new int[length - 1];
+        getKerning(chars, 0, length, kerning);
+        for (int i = 0; i < kerning.length; i++) {
+            if (kerning[i] != 0) {
+                return kerning;
+            }
+        }
+        return null;
+    }
+
+    /* sum of kerning in chars. Kerning of each pair is stored to result, if not null. */
+    private int getKerning(char[] chars, int offset, int length, int[] result) {
+        char[] missing = null;
+        int missingCount = 0;
+        int total = 0;
+
+        long[] table = kerningTable;
+        for (int i = 0; i < length - 1; i++) {
+            char left  = chars[offset + i];
+            char right = chars[offset + i + 1];
+            long e = findKerning(table, left, right);
+            if (e == EMPTY_PAIR) {
+                if (missing == null) {
+                    missing = new char[2 * (length - 1 - i)];
+                }
+                missing[2 * missingCount]     = left;
+                missing[2 * missingCount + 1] = right;
+                missingCount++;
+                continue;
+            }
+            total += (int)e;
+            if (result != null) {
+                result[i] = (int)e;
+            }
+        }
+
+        if (missingCount == 0) {
+            return total;
+        }
+
+        table = loadKerning(missing, missingCount);
+        total = 0;
+        for (int i = 0; i < length - 1; i++) {
+            long e = findKerning(table, chars[offset + i], chars[offset + i + 1]);
+            int k = (e == EMPTY_PAIR) ? 0 : (int)e;
+            total += k;
+            if (result != null) {
+                result[i] = k;
+            }
+        }
+        return total;
+    }
+
+    private static int hashPair(int pair, int mask) {
+        return (pair * 0x9E3779B1 >>> 16) & mask;
+    }
+
+    /* returns kerning in low 32 bits, or EMPTY_PAIR if pair is not in table */
+    private static long findKerning(long[] table, char left, char right) {
+        if (table == null) {
+            return EMPTY_PAIR;
+        }
+        int pair = (left << 16) | right;
+        int mask = table.length - 1;
+        for (int i = hashPair(pair, mask); ; i = (i + 1) & mask) {
+            long e = table[i];
+            if (e == EMPTY_PAIR) {
+                return EMPTY_PAIR;
+            }
+            if ((int)(e >>> 32) == pair) {
+                return e & 0xffffffffL;
+            }
+        }
+    }
+
+    private static boolean insertKerning(long[] table, int pair, int kerning) {
+        int mask = table.length - 1;
+        for (int i = hashPair(pair, mask); ; i = (i + 1) & mask) {
+            long e = table[i];
+            if (e == EMPTY_PAIR) {
+                table[i] = ((long)pair << 32) | (kerning & 0xffffffffL);
+                return true;
+            }
+            if ((int)(e >>> 32) == pair) {
+                return false;
+            }
+        }
+    }
+
+    private synchronized long[] loadKerning(char[] pairs, int count) {
+        int[] kerning = new int[count];
+        synchronized (face) {
+            if (ftSize != 0) {
+                kerningN(ftSize, pairs, count, kerning);
+            }
+        }
+
+        long[] old = kerningTable;
+        if (old == null || kerningCount + count > MAX_KERNING_PAIRS) {
+            /* start over when table is full */
+            old = null;
+            kerningCount = 0;
+        }
+        int needed = Math.min(kerningCount + count, MAX_KERNING_PAIRS) * 2;
+        int size = 64;
+        while (size < needed) {
+            size <<= 1;
+        }
+
+        long[] table = new long[size];
+        Arrays.fill(table, EMPTY_PAIR);
+        if (old != null) {
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] != EMPTY_PAIR) {
+                    table[hashSlot(table, (int)(old[i] >>> 32))] = old[i];
+                }
+            }
+        }
+        for (int i = 0; i < count && kerningCount < MAX_KERNING_PAIRS; i++) {
+            int pair = (pairs[2 * i] << 16) | pairs[2 * i + 1];
+            if (pair == (int)(EMPTY_PAIR >>> 32)) {
+                continue;
+            }
+            if (insertKerning(table, pair, kerning[i])) {
+                kerningCount++;
+            }
+        }
+
+        kerningTable = table;
+        return table;
+    }
+
+    private static int hashSlot(long[] table, int pair) {
+        int mask = table.length - 1;
+        int i = hashPair(pair, mask);
+        while (table[i] != EMPTY_PAIR) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private synchronized int[] loadWidthPage(int index) {
+        int[][] pages = widthPages;
+        if (pages[index] != null) {
+            return pages[index];
+        }
+
+        int[] page = new int[256];
+        synchronized (face) {
+            if (ftSize != 0) {
+                charWidthsN(ftSize, index << 8, 256, page);
+            }
+        }
+
+        int[][] newPages = new int[256][];
+        System.arraycopy(pages, 0, newPages, 0, 256);
+        newPages[index] = page;
+        widthPages = newPages;
+        return page;
+    }
+
+    /* returns true if FreeType size was freed */
+    private boolean destroy() {
+        glyphCache.clear();
+        synchronized (face) {
+            if (ftSize == 0) {
+                return false;
+            }
+            /* sizes are freed with the face */
+            if (face.ftFace != 0) {
+                destroySizeN(ftSize);
+            }
+            ftSize = 0;
+            return true;
         }
     }
 
     protected void finalize() throws Throwable {
         try {
-            destroy();
+            /* do not hold face lock here: sizeDestroyed() locks class before face */
+            if (destroy()) {
+                sizeDestroyed(face, key);
+            }
         } catch (Throwable t) {
             throw t;
         } finally {
@@ -21,10 +21,7 @@ package java.awt;
 
 import java.lang.reflect.Field;
 import java.text.AttributedCharacterIterator;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.awt.image.AreaAveragingScaleFilter;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageConsumer;
@@ -43,13 +40,17 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
     private int width;
     private int height;
     private int[] backBuffer;
-    private Area dirty;
+    /** pixel (x,y) is at backBuffer[bufferOffset + y * stride + x] (images can be views to other images) */
+    private int bufferOffset;
+    private int stride;
+    private DirtyRegion dirty;
     private GraphicsConfiguration gc;
     private Color foreground;
     protected Color background;
     private Font font;
     private BDFontMetrics fontMetrics;
     private AlphaComposite composite;
+    private int scaleQuality = -1;
 
     /** The current xor color. If null then we are in paint mode. */
     private Color xorColor;
@@ -61,6 +62,12 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
     /** The actual clip rectangle that is intersection of user clip and constrained rectangle. */
     private Rectangle actualClip;
 
+    /** actualClip in primitive form, limited to raster size. x1 and y1 are exclusive. */
+    private int clipX0;
+    private int clipY0;
+    private int clipX1;
+    private int clipY1;
+
     /** The current user clip rectangle or null if no clip has been set. This is stored in the
      native coordinate system and not the (possibly) translated Java coordinate system. */
     private Rectangle clip = null;
@@ -73,6 +80,8 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
 
     BDGraphicsBase(BDGraphicsBase g) {
         backBuffer = g.backBuffer;
+        bufferOffset = g.bufferOffset;
+        stride = g.stride;
         dirty = g.dirty;
         width = g.width;
         height = g.height;
@@ -80,6 +89,7 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         foreground = g.foreground;
         background = g.background;
         composite = g.composite;
+        scaleQuality = g.scaleQuality;
         font = g.font;
         fontMetrics = g.fontMetrics;
         originX = g.originX;
@@ -94,6 +104,8 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         width = window.getWidth();
         height = window.getHeight();
         backBuffer = window.getBdBackBuffer();
+        bufferOffset = 0;
+        stride = width;
         dirty = window.getDirtyArea();
         gc = window.getGraphicsConfiguration();
         foreground = window.getForeground();
@@ -114,6 +126,8 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         width = image.getWidth();
         height = image.getHeight();
         backBuffer = image.getBdBackBuffer();
+        bufferOffset = image.getBdOffset();
+        stride = image.getBdStride();
         dirty = image.getDirtyArea();
 
         gc = image.getGraphicsConfiguration();
@@ -258,159 +272,666 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
             actualClip = clip.intersection(rect);
         else
             actualClip = rect;
+
+        clipX0 = Math.max(0, actualClip.x);
+        clipY0 = Math.max(0, actualClip.y);
+        clipX1 = Math.min(width, actualClip.x + actualClip.width);
+        clipY1 = Math.min(height, actualClip.y + actualClip.height);
+    }
+
+    /*
+     * Pixel blending
+     *
+     * Pixels are straight (non-premultiplied) ARGB.
+     * 8x8 bit products are normalized with div255() (multiply-shift).
+     * Only blending over translucent destination needs a (single)
+     * division to get the reciprocal of resulting alpha.
+     */
+
+    /* round(x / 255) for 0 <= x <= 65535 */
+    private static int div255(int x) {
+        x += 128;
+        return (x + (x >> 8)) >> 8;
     }
 
-    private int alphaBlend(int dest, int src) {
+    /* blend src over dst. As is effective source alpha (0 < As < 255), src alpha bits are ignored. */
+    private static int blend(int dst, int src, int As) {
+        int Ad = dst >>> 24;
+        if (Ad == 0) {
+            return (As << 24) | (src & 0x00ffffff);
+        }
+
+        int Fd, R, G, B;
+
+        if (Ad == 255) {
+            Fd = 255 - As;
+            R = div255(((src >> 16) & 255) * As + ((dst >> 16) & 255) * Fd);
+            G = div255(((src >>  8) & 255) * As + ((dst >>  8) & 255) * Fd);
+            B = div255(( src        & 255) * As + ( dst        & 255) * Fd);
+            return 0xff000000 | (R << 16) | (G << 8) | B;
+        }
+
+        /* weights scaled by 255 */
+        int Fs  = As * 255;
+        Fd      = Ad * (255 - As);
+        int Ao  = Fs + Fd;
+        int inv = (1 << 24) / Ao;
+
+        /* products fit in unsigned 32 bits */
+        R = ((((src >> 16) & 255) * Fs + ((dst >> 16) & 255) * Fd) * inv + (1 << 23)) >>> 24;
+        G = ((((src >>  8) & 255) * Fs + ((dst >>  8) & 255) * Fd) * inv + (1 << 23)) >>> 24;
+        B = ((( src        & 255) * Fs + ( dst        & 255) * Fd) * inv + (1 << 23)) >>> 24;
+
+        return (div255(Ao) << 24) | (R << 16) | (G << 8) | B;
+    }
+
+    private static int alphaBlend(int dest, int src) {
         int As = src >>> 24;
         if (As == 0)
             return dest;
         if (As == 255)
             return src;
-        int Ad = (dest >>> 24);
-        if (Ad == 0)
-            return src;
-        int R, G, B;
-        R = ((src >>> 16) & 255) * As * 255;
-        G = ((src >>> 8) & 255) * As * 255;
-        B = (src & 255) * As * 255;
-        Ad = Ad * (255 - As);
-        As = As * 255 + Ad;
-        R = (R + ((dest >>> 16) & 255) * Ad) / As;
-        G = (G + ((dest >>> 8) & 255) * Ad) / As;
-        B = (B + (dest & 255) * Ad) / As;
-        R = Math.min(255, R);
-        G = Math.min(255, G);
-        B = Math.min(255, B);
-        Ad = As / 255;
-        Ad = Math.min(255, Ad);
-        return (Ad << 24) | (R << 16) | (G << 8) | B;
+        return blend(dest, src, As);
+    }
+
+    /* extra alpha of current composite, 0...255 */
+    private int getExtraAlpha() {
+        return (int)(composite.getAlpha() * 255.0f + 0.5f);
+    }
+
+    /*
+     * Span rendering.
+     *
+     * All coordinates are in native coordinate system and already clipped.
+     */
+
+    /* AlphaComposite rules missing from some profiles */
+    private static final int RULE_DST      = 9;
+    private static final int RULE_SRC_ATOP = 10;
+    private static final int RULE_DST_ATOP = 11;
+    private static final int RULE_XOR      = 12;
+
+    /*
+     * Porter-Duff rules for non-trivial cases.
+     * As is effective source alpha (extra alpha applied), src alpha bits are ignored.
+     * Straight alpha: Ao = As*Fs + Ad*Fd, Co = (Cs*As*Fs + Cd*Ad*Fd) / Ao
+     */
+
+    /* round(a * (1 - b)) with 8-bit alpha values */
+    private static int mulInv(int a, int b) {
+        return div255(a * (255 - b));
     }
 
-    private int applyComposite(int rgb) {
-        return ((int)((rgb >>> 24) * composite.getAlpha()) << 24) | (rgb & 0x00FFFFFF);
+    /* (1 - a) * c1 + a * c2 for each color component */
+    private static int lerpRGB(int c1, int c2, int a) {
+        int ia = 255 - a;
+        int R = div255(((c1 >> 16) & 255) * ia + ((c2 >> 16) & 255) * a);
+        int G = div255(((c1 >>  8) & 255) * ia + ((c2 >>  8) & 255) * a);
+        int B = div255(( c1        & 255) * ia + ( c2        & 255) * a);
+        return (R << 16) | (G << 8) | B;
     }
 
-    private void drawSpanN(int x, int y, int length, int rgb) {
+    /* Fs = 1 - Ad, Fd = 1 */
+    private static int dstOver(int dst, int src, int As) {
+        int Ad = dst >>> 24;
+        if (Ad == 255 || As == 0)
+            return dst;
+        if (Ad == 0)
+            return (As << 24) | (src & 0x00ffffff);
+        return blend((As << 24) | (src & 0x00ffffff), dst, Ad);
+    }
 
-        Rectangle rect = new Rectangle(x, y, length, 1);
-        rect = actualClip.intersection(rect);
+    /* Fs = Ad, Fd = 1 - As */
+    private static int srcAtop(int dst, int src, int As) {
+        int Ad = dst >>> 24;
+        if (Ad == 0)
+            return dst;
+        return (Ad << 24) | lerpRGB(dst, src, As);
+    }
 
-        if (rect.width <= 0 || rect.height <= 0 || rect.x < 0 || rect.y < 0) {
+    /* Fs = 1 - Ad, Fd = As */
+    private static int dstAtop(int dst, int src, int As) {
+        if (As == 0)
+            return 0;
+        return (As << 24) | lerpRGB(src, dst, dst >>> 24);
+    }
+
+    /* Fs = 1 - Ad, Fd = 1 - As */
+    private static int xor(int dst, int src, int As) {
+        int Ad = dst >>> 24;
+        int Fs = As * (255 - Ad);
+        int Fd = Ad * (255 - As);
+        int Ao = Fs + Fd;
+        if (Ao == 0)
+            return 0;
+        if (Fd == 0)
+            return (div255(Ao) << 24) | (src & 0x00ffffff);
+        if (Fs == 0)
+            return (div255(Ao) << 24) | (dst & 0x00ffffff);
+
+        int inv = (1 << 24) / Ao;
+        int R = ((((src >> 16) & 255) * Fs + ((dst >> 16) & 255) * Fd) * inv + (1 << 23)) >>> 24;
+        int G = ((((src >>  8) & 255) * Fs + ((dst >>  8) & 255) * Fd) * inv + (1 << 23)) >>> 24;
+        int B = ((( src        & 255) * Fs + ( dst        & 255) * Fd) * inv + (1 << 23)) >>> 24;
+        return (div255(Ao) << 24) | (R << 16) | (G << 8) | B;
+    }
+
+    private void fillSpanN(int offset, int length, int rgb) {
+        if (PixelFormat.PREMULTIPLIED) {
+            fillSpanPre(offset, length, rgb);
             return;
         }
 
-        x      = rect.x;
-        length = rect.width;
+        int end = offset + length;
 
         if (xorColor != null) {
-            for (int i = 0; i < length; i++) {
-                backBuffer[y * width + x + i] ^= xorColor.getRGB() ^ rgb;
+            int xor = xorColor.getRGB() ^ rgb;
+            for (int i = offset; i < end; i++) {
+                backBuffer[i] ^= xor;
             }
-
-            dirty.add(rect);
             return;
         }
 
+        int ea    = getExtraAlpha();
+        int As    = rgb >>> 24;
+        int color = rgb & 0x00ffffff;
+        if (ea < 255) {
+            As = div255(As * ea);
+        }
+
+        int[] buf = backBuffer;
+
         switch (composite.getRule()) {
             case AlphaComposite.CLEAR:
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = 0;
-                }
+                Arrays.fill(buf, offset, end, 0);
                 break;
+
             case AlphaComposite.SRC:
-                rgb = applyComposite(rgb);
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = rgb;
-                }
+                Arrays.fill(buf, offset, end, (As << 24) | color);
+                break;
+
+            case RULE_DST:
                 break;
+
             case AlphaComposite.SRC_OVER:
-                rgb = applyComposite(rgb);
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = alphaBlend(backBuffer[y * width + x + i], rgb);
+                if (As == 0) {
+                    break;
+                }
+                if (As == 255) {
+                    Arrays.fill(buf, offset, end, rgb);
+                    break;
+                }
+                for (int i = offset; i < end; i++) {
+                    buf[i] = blend(buf[i], color, As);
                 }
                 break;
-        }
 
-        dirty.add(rect);
-    }
+            case AlphaComposite.DST_OVER:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = dstOver(buf[i], color, As);
+                }
+                break;
 
-    private void drawSpanN(int x, int y, int length, int src[], int srcOffset, boolean flipX) {
+            case AlphaComposite.SRC_IN:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = (div255(As * (buf[i] >>> 24)) << 24) | color;
+                }
+                break;
 
-        /* avoid overreading source */
-        if (srcOffset + length > src.length) {
-            length -= srcOffset + length - src.length;
-        }
-        /* avoid underreading source */
-        if (srcOffset < 0) {
-            length += srcOffset;
-            x -= srcOffset;
-            srcOffset = 0;
+            case AlphaComposite.DST_IN:
+                if (As == 255) {
+                    break;
+                }
+                for (int i = offset; i < end; i++) {
+                    int d = buf[i];
+                    buf[i] = (div255((d >>> 24) * As) << 24) | (d & 0x00ffffff);
+                }
+                break;
+
+            case AlphaComposite.SRC_OUT:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = (mulInv(As, buf[i] >>> 24) << 24) | color;
+                }
+                break;
+
+            case AlphaComposite.DST_OUT:
+                if (As == 0) {
+                    break;
+                }
+                for (int i = offset; i < end; i++) {
+                    int d = buf[i];
+                    buf[i] = (mulInv(d >>> 24, As) << 24) | (d & 0x00ffffff);
+                }
+                break;
+
+            case RULE_SRC_ATOP:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = srcAtop(buf[i], color, As);
+                }
+                break;
+
+            case RULE_DST_ATOP:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = dstAtop(buf[i], color, As);
+                }
+                break;
+
+            case RULE_XOR:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = xor(buf[i], color, As);
+                }
+                break;
         }
-        if (length <= 0) {
+    }
+
+    private void blitSpanN(int dstOffset, int length, int[] src, int srcOffset, boolean flipX) {
+        if (PixelFormat.PREMULTIPLIED) {
+            blitSpanPre(dstOffset, length, src, srcOffset, flipX);
             return;
         }
 
-        Rectangle rect = new Rectangle(x, y, length, 1);
-        rect = actualClip.intersection(rect);
+        int end  = dstOffset + length;
+        int step = 1;
+        int s    = srcOffset;
+
+        if (flipX) {
+            s    = srcOffset + length - 1;
+            step = -1;
+        }
 
-        if (rect.width <= 0 || rect.height <= 0 || rect.x < 0 || rect.y < 0) {
+        if (xorColor != null) {
+            int xor = xorColor.getRGB();
+            for (int d = dstOffset; d < end; d++, s += step) {
+                backBuffer[d] ^= xor ^ src[s];
+            }
             return;
         }
 
-        int dstOffset;
+        int ea = getExtraAlpha();
+        int[] buf = backBuffer;
 
-        srcOffset += rect.x - x;
-        x          = rect.x;
-        length     = rect.width;
-        dstOffset  = y * width + x;
+        switch (composite.getRule()) {
+            case AlphaComposite.CLEAR:
+                Arrays.fill(buf, dstOffset, end, 0);
+                break;
 
-        if (xorColor != null) {
+            case RULE_DST:
+                break;
 
-            if (flipX) {
-                for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + length -1 - i] ^= xorColor.getRGB() ^ src[srcOffset + i];
+            case AlphaComposite.SRC:
+                if (ea >= 255) {
+                    if (!flipX) {
+                        System.arraycopy(src, srcOffset, buf, dstOffset, length);
+                    } else {
+                        for (int d = dstOffset; d < end; d++, s += step) {
+                            buf[d] = src[s];
+                        }
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = (div255((rgb >>> 24) * ea) << 24) | (rgb & 0x00ffffff);
+                    }
                 }
-            } else {
-                for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + i] ^= xorColor.getRGB() ^ src[srcOffset + i];
+                break;
+
+            case AlphaComposite.SRC_OVER:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        int As  = rgb >>> 24;
+                        if (As == 255) {
+                            buf[d] = rgb;
+                        } else if (As != 0) {
+                            buf[d] = blend(buf[d], rgb, As);
+                        }
+                    }
+                } else if (ea > 0) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        int As  = div255((rgb >>> 24) * ea);
+                        if (As != 0) {
+                            buf[d] = blend(buf[d], rgb, As);
+                        }
+                    }
                 }
-            }
+                break;
+
+            case AlphaComposite.DST_OVER:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = dstOver(buf[d], rgb, rgb >>> 24);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = dstOver(buf[d], rgb, div255((rgb >>> 24) * ea));
+                    }
+                }
+                break;
+
+            case AlphaComposite.SRC_IN:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = (div255((rgb >>> 24) * (buf[d] >>> 24)) << 24) | (rgb & 0x00ffffff);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        int As  = div255((rgb >>> 24) * ea);
+                        buf[d] = (div255(As * (buf[d] >>> 24)) << 24) | (rgb & 0x00ffffff);
+                    }
+                }
+                break;
+
+            case AlphaComposite.DST_IN:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int dst = buf[d];
+                        buf[d] = (div255((dst >>> 24) * (src[s] >>> 24)) << 24) | (dst & 0x00ffffff);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int dst = buf[d];
+                        int As  = div255((src[s] >>> 24) * ea);
+                        buf[d] = (div255((dst >>> 24) * As) << 24) | (dst & 0x00ffffff);
+                    }
+                }
+                break;
 
-            dirty.add(rect);
+            case AlphaComposite.SRC_OUT:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = (mulInv(rgb >>> 24, buf[d] >>> 24) << 24) | (rgb & 0x00ffffff);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        int As  = div255((rgb >>> 24) * ea);
+                        buf[d] = (mulInv(As, buf[d] >>> 24) << 24) | (rgb & 0x00ffffff);
+                    }
+                }
+                break;
+
+            case AlphaComposite.DST_OUT:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int dst = buf[d];
+                        buf[d] = (mulInv(dst >>> 24, src[s] >>> 24) << 24) | (dst & 0x00ffffff);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int dst = buf[d];
+                        int As  = div255((src[s] >>> 24) * ea);
+                        buf[d] = (mulInv(dst >>> 24, As) << 24) | (dst & 0x00ffffff);
+                    }
+                }
+                break;
+
+            case RULE_SRC_ATOP:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = srcAtop(buf[d], rgb, rgb >>> 24);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = srcAtop(buf[d], rgb, div255((rgb >>> 24) * ea));
+                    }
+                }
+                break;
+
+            case RULE_DST_ATOP:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = dstAtop(buf[d], rgb, rgb >>> 24);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = dstAtop(buf[d], rgb, div255((rgb >>> 24) * ea));
+                    }
+                }
+                break;
+
+            case RULE_XOR:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = xor(buf[d], rgb, rgb >>> 24);
+                    }
+                } else {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int rgb = src[s];
+                        buf[d] = xor(buf[d], rgb, div255((rgb >>> 24) * ea));
+                    }
+                }
+                break;
+        }
+    }
+
+    /*
+     * Span rendering with premultiplied buffers.
+     * Porter-Duff rules are Co = Cs*Fs + Cd*Fd for all channels (alpha included).
+     * Valid premultiplied pixels (Ci <= Ai) can't overflow channels.
+     */
+
+    /* composite premultiplied source (extra alpha applied) with premultiplied destination */
+    private static int composePre(int rule, int dst, int src) {
+        int As = src >>> 24;
+        int Ad = dst >>> 24;
+        switch (rule) {
+            case AlphaComposite.CLEAR:    return 0;
+            case AlphaComposite.SRC:      return src;
+            case RULE_DST:                return dst;
+            case AlphaComposite.SRC_OVER: return src + PixelFormat.mul(dst, 255 - As);
+            case AlphaComposite.DST_OVER: return dst + PixelFormat.mul(src, 255 - Ad);
+            case AlphaComposite.SRC_IN:   return PixelFormat.mul(src, Ad);
+            case AlphaComposite.DST_IN:   return PixelFormat.mul(dst, As);
+            case AlphaComposite.SRC_OUT:  return PixelFormat.mul(src, 255 - Ad);
+            case AlphaComposite.DST_OUT:  return PixelFormat.mul(dst, 255 - As);
+            case RULE_SRC_ATOP:           return PixelFormat.mul(src, Ad) + PixelFormat.mul(dst, 255 - As);
+            case RULE_DST_ATOP:           return PixelFormat.mul(src, 255 - Ad) + PixelFormat.mul(dst, As);
+            case RULE_XOR:                return PixelFormat.mul(src, 255 - Ad) + PixelFormat.mul(dst, 255 - As);
+        }
+        return dst;
+    }
+
+    private void fillSpanPre(int offset, int length, int rgb) {
+        int end = offset + length;
+        int[] buf = backBuffer;
+
+        if (xorColor != null) {
+            int xor = PixelFormat.premultiply(xorColor.getRGB()) ^ PixelFormat.premultiply(rgb);
+            for (int i = offset; i < end; i++) {
+                buf[i] ^= xor;
+            }
             return;
         }
 
-        switch (composite.getRule()) {
+        int ea = getExtraAlpha();
+        int color = PixelFormat.premultiply(rgb);
+        if (ea < 255) {
+            color = PixelFormat.mul(color, ea);
+        }
+        int As = color >>> 24;
+        int rule = composite.getRule();
+
+        switch (rule) {
             case AlphaComposite.CLEAR:
-                for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + i] = 0;
+                Arrays.fill(buf, offset, end, 0);
+                break;
+
+            case AlphaComposite.SRC:
+                Arrays.fill(buf, offset, end, color);
+                break;
+
+            case RULE_DST:
+                break;
+
+            case AlphaComposite.SRC_OVER:
+                if (As == 0) {
+                    break;
+                }
+                if (As == 255) {
+                    Arrays.fill(buf, offset, end, color);
+                    break;
+                }
+                for (int i = offset; i < end; i++) {
+                    buf[i] = color + PixelFormat.mul(buf[i], 255 - As);
+                }
+                break;
+
+            default:
+                for (int i = offset; i < end; i++) {
+                    buf[i] = composePre(rule, buf[i], color);
                 }
                 break;
+        }
+    }
+
+    private void blitSpanPre(int dstOffset, int length, int[] src, int srcOffset, boolean flipX) {
+        int end  = dstOffset + length;
+        int step = 1;
+        int s    = srcOffset;
+        int[] buf = backBuffer;
+
+        if (flipX) {
+            s    = srcOffset + length - 1;
+            step = -1;
+        }
+
+        if (xorColor != null) {
+            int xor = PixelFormat.premultiply(xorColor.getRGB());
+            for (int d = dstOffset; d < end; d++, s += step) {
+                buf[d] ^= xor ^ src[s];
+            }
+            return;
+        }
+
+        int ea = getExtraAlpha();
+        int rule = composite.getRule();
+
+        switch (rule) {
+            case AlphaComposite.CLEAR:
+                Arrays.fill(buf, dstOffset, end, 0);
+                break;
+
+            case RULE_DST:
+                break;
+
             case AlphaComposite.SRC:
-                if (flipX) {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + length -1 - i] = applyComposite(src[srcOffset + i]);
+                if (ea >= 255) {
+                    if (!flipX) {
+                        System.arraycopy(src, srcOffset, buf, dstOffset, length);
+                    } else {
+                        for (int d = dstOffset; d < end; d++, s += step) {
+                            buf[d] = src[s];
+                        }
                     }
                 } else {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + i] = applyComposite(src[srcOffset + i]);
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        buf[d] = PixelFormat.mul(src[s], ea);
                     }
                 }
                 break;
+
             case AlphaComposite.SRC_OVER:
-                if (flipX) {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + length -1 - i] = alphaBlend(backBuffer[dstOffset + length -1 - i], applyComposite(src[srcOffset + i]));
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int p  = src[s];
+                        int As = p >>> 24;
+                        if (As == 255) {
+                            buf[d] = p;
+                        } else if (As != 0) {
+                            buf[d] = p + PixelFormat.mul(buf[d], 255 - As);
+                        }
+                    }
+                } else if (ea > 0) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        int p = PixelFormat.mul(src[s], ea);
+                        if (p != 0) {
+                            buf[d] = p + PixelFormat.mul(buf[d], 255 - (p >>> 24));
+                        }
+                    }
+                }
+                break;
+
+            default:
+                if (ea >= 255) {
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        buf[d] = composePre(rule, buf[d], src[s]);
                     }
                 } else {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + i] = alphaBlend(backBuffer[dstOffset + i], applyComposite(src[srcOffset + i]));
+                    for (int d = dstOffset; d < end; d++, s += step) {
+                        buf[d] = composePre(rule, buf[d], PixelFormat.mul(src[s], ea));
                     }
                 }
                 break;
         }
+    }
+
+    void drawSpanN(int x, int y, int length, int rgb) {
+
+        if (y < clipY0 || y >= clipY1) {
+            return;
+        }
+
+        int x1 = x + length;
+        if (x < clipX0) x = clipX0;
+        if (x1 > clipX1) x1 = clipX1;
+        if (x1 <= x) {
+            return;
+        }
+
+        fillSpanN(bufferOffset + y * stride + x, x1 - x, rgb);
+
+        dirty.add(x, y, x1 - 1, y);
+    }
+
+    private void drawSpanN(int x, int y, int length, int src[], int srcOffset, boolean flipX) {
+
+        /* avoid overreading source */
+        if (srcOffset + length > src.length) {
+            length -= srcOffset + length - src.length;
+        }
+        /* avoid underreading source */
+        if (srcOffset < 0) {
+            length += srcOffset;
+            x -= srcOffset;
+            srcOffset = 0;
+        }
+        if (length <= 0) {
+            return;
+        }
+
+        if (y < clipY0 || y >= clipY1) {
+            return;
+        }
 
-        dirty.add(rect);
+        int x0 = x;
+        int x1 = x + length;
+        if (x0 < clipX0) x0 = clipX0;
+        if (x1 > clipX1) x1 = clipX1;
+        if (x1 <= x0) {
+            return;
+        }
+
+        /* skip clipped source pixels (from the end of source when flipping) */
+        if (flipX) {
+            srcOffset += (x + length) - x1;
+        } else {
+            srcOffset += x0 - x;
+        }
+
+        blitSpanN(bufferOffset + y * stride + x0, x1 - x0, src, srcOffset, flipX);
+
+        dirty.add(x0, y, x1 - 1, y);
     }
 
     private void drawSpan(int x, int y, int length, int rgb) {
@@ -429,50 +950,48 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         drawSpanN(x, y, 1, rgb);
     }
 
-    private void drawGlyph(int[] rgbArray, int x0, int y0, int w, int h) {
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                drawPoint(x + x0, y + y0, rgbArray[y * w + x]);
-    }
-
     private void drawPoint(int x, int y, int rgb) {
         x += originX;
         y += originY;
-        if (actualClip.contains(x, y))
-            drawPointN(x, y, rgb);
+        drawPointN(x, y, rgb);
     }
 
     public void clearRect(int x, int y, int w, int h) {
         x += originX;
         y += originY;
-        Rectangle rect = new Rectangle(x, y, w, h);
-        rect = actualClip.intersection(rect);
-        if (rect.isEmpty()) {
+
+        int x1 = Math.min(x + w, clipX1);
+        int y1 = Math.min(y + h, clipY1);
+        x = Math.max(x, clipX0);
+        y = Math.max(y, clipY0);
+        if (x1 <= x || y1 <= y) {
             return;
         }
-        x = rect.x;
-        y = rect.y;
-        w = rect.width;
-        h = rect.height;
-        int rgb = background.getRGB();
-        for (int i = 0; i < h; i++)
-            Arrays.fill(backBuffer, (y + i) * width + x, (y + i) * width + x + w, rgb);
 
-        dirty.add(rect);
+        int rgb = PixelFormat.fromARGB(background.getRGB());
+        for (int Y = y; Y < y1; Y++)
+            Arrays.fill(backBuffer, bufferOffset + Y * stride + x, bufferOffset + Y * stride + x1, rgb);
+
+        dirty.add(x, y, x1 - 1, y1 - 1);
     }
 
     public void fillRect(int x, int y, int w, int h) {
         x += originX;
         y += originY;
-        Rectangle rect = new Rectangle(x, y, w, h);
-        rect = actualClip.intersection(rect);
-        x = rect.x;
-        y = rect.y;
-        w = rect.width;
-        h = rect.height;
+
+        int x1 = Math.min(x + w, clipX1);
+        int y1 = Math.min(y + h, clipY1);
+        x = Math.max(x, clipX0);
+        y = Math.max(y, clipY0);
+        if (x1 <= x || y1 <= y) {
+            return;
+        }
+
         int rgb = foreground.getRGB();
-        for (int Y = y; Y < (y + h); Y++)
-            drawSpanN(x, Y, w, rgb);
+        for (int Y = y; Y < y1; Y++)
+            fillSpanN(bufferOffset + Y * stride + x, x1 - x, rgb);
+
+        dirty.add(x, y, x1 - 1, y1 - 1);
     }
 
     public void drawRect(int x, int y, int w, int h) {
@@ -546,10 +1065,13 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
 
     /**
      * Copies an area of the canvas that this graphics context paints to.
-     * @param X the x-coordinate of the source.
-     * @param Y the y-coordinate of the source.
-     * @param W the width.
-     * @param H the height.
+     * Pixels are copied as-is (composite is not used), and the destination
+     * is limited by clip. Source and destination may overlap: rows are copied
+     * in scroll direction, so each row is read before it is overwritten.
+     * @param x the x-coordinate of the source.
+     * @param y the y-coordinate of the source.
+     * @param w the width.
+     * @param h the height.
      * @param dx the horizontal distance to copy the pixels.
      * @param dy the vertical distance to copy the pixels.
      */
@@ -558,29 +1080,34 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         x += originX;
         y += originY;
 
-        Rectangle rect = new Rectangle(x, y, w, h);
-        rect = actualClip.intersection(rect);
+        /* source must be inside raster */
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + w, width);
+        int y1 = Math.min(y + h, height);
+
+        /* destination must be inside clip */
+        x0 = Math.max(x0, clipX0 - dx);
+        y0 = Math.max(y0, clipY0 - dy);
+        x1 = Math.min(x1, clipX1 - dx);
+        y1 = Math.min(y1, clipY1 - dy);
 
-        if (rect.width <= 0 || rect.height <= 0) {
+        if (x1 <= x0 || y1 <= y0 || (dx == 0 && dy == 0)) {
             return;
         }
 
-        x = rect.x;
-        y = rect.y;
-        w = rect.width;
-        h = rect.height;
-
-        int subImage[] = new int[w * h];
-
-        // copy back buffer
-        for (int i = 0; i < h; i++) {
-            System.arraycopy(backBuffer, ((y + i) * width) + x, subImage, w * i, w);
+        int length = x1 - x0;
+        if (dy > 0) {
+            for (int Y = y1 - 1; Y >= y0; Y--) {
+                System.arraycopy(backBuffer, bufferOffset + Y * stride + x0, backBuffer, bufferOffset + (Y + dy) * stride + x0 + dx, length);
+            }
+        } else {
+            for (int Y = y0; Y < y1; Y++) {
+                System.arraycopy(backBuffer, bufferOffset + Y * stride + x0, backBuffer, bufferOffset + (Y + dy) * stride + x0 + dx, length);
+            }
         }
 
-        // draw sub image
-        for (int i = 0; i < h; i++) {
-            drawSpanN(x + dx, y + i + dy, w, subImage, w * i, false);
-        }
+        dirty.add(x0 + dx, y0 + dy, x1 - 1 + dx, y1 - 1 + dy);
     }
 
     /** Draws lines defined by an array of x points and y points */
@@ -589,7 +1116,7 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
             drawPoint(xPoints[0], yPoints[0], foreground.getRGB());
         } else {
             for (int i = 0; i < (nPoints - 1); i++)
-                drawLine(xPoints[i], xPoints[i], xPoints[i + 1], xPoints[i + 1]);
+                drawLine(xPoints[i], yPoints[i], xPoints[i + 1], yPoints[i + 1]);
         }
     }
 
@@ -599,182 +1126,87 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
             drawPoint(xPoints[0], yPoints[0], foreground.getRGB());
         } else {
             for (int i = 0; i < (nPoints - 1); i++)
-                drawLine(xPoints[i], xPoints[i], xPoints[i + 1], xPoints[i + 1]);
+                drawLine(xPoints[i], yPoints[i], xPoints[i + 1], yPoints[i + 1]);
             if (nPoints > 2)
-                drawLine(xPoints[0], xPoints[0], xPoints[nPoints - 1], xPoints[nPoints - 1]);
+                drawLine(xPoints[nPoints - 1], yPoints[nPoints - 1], xPoints[0], yPoints[0]);
         }
     }
 
-    /** Fills a polygon with the current fill mask */
+    /** Fills a polygon with the current fill mask (even-odd rule) */
     public void fillPolygon(int xPoints[], int yPoints[], int nPoints) {
-
-        int minY = Integer.MAX_VALUE;
-        int maxY = Integer.MIN_VALUE;
-        int colour = foreground.getRGB();
-
         if (nPoints < 3) {
             return;
         }
 
-        for (int i = 0; i < nPoints; i++) {
-            if (yPoints[i] > maxY) {
-                maxY = yPoints[i];
-            }
-            if (yPoints[i] < minY) {
-                minY = yPoints[i];
-            }
-        }
-
-        // check the last point to see if its the same as the first
-        if (xPoints[0] == xPoints[nPoints - 1] && yPoints[0] == yPoints[nPoints - 1]) {
-            nPoints--;
-        }
-
-        PolyEdge[] polyEdges = new PolyEdge[nPoints];
-
-        for (int i = 0; i < nPoints - 1; i++) {
-            polyEdges[i] = new PolyEdge(xPoints[i], yPoints[i], xPoints[i + 1], yPoints[i + 1]);
-        }
-
-        // add the last one
-        polyEdges[nPoints - 1] = new PolyEdge(xPoints[nPoints - 1], yPoints[nPoints - 1], xPoints[0], yPoints[0]);
-        ArrayList xList = new ArrayList();
-        for (int i = minY; i <= maxY; i++) {
-            for (int j = 0; j < nPoints; j++) {
-                if (polyEdges[j].intersects(i)) {
-                    int x = polyEdges[j].intersectionX(i);
-                    xList.add(new Integer(x));
-                }
-            }
-
-            // probably a better way of doing this (removing duplicates);
-            HashSet hs = new HashSet();
-            hs.addAll(xList);
-            xList.clear();
-            xList.addAll(hs);
-
-            if (xList.size() % 2 > 0) {
-                xList.clear();
-                continue;                       // this should be impossible unless the poly is open somewhere
-            }
-
-            Collections.sort(xList);
-
-            for (int j = 0; j < xList.size(); j +=2 ) {
-                int x1 = ((Integer)xList.get(j)).intValue();
-                int x2 = ((Integer)xList.get(j + 1)).intValue();
-
-                drawSpan(x1, i, x2 - x1, colour);
-            }
-
-            xList.clear();
+        ScanlineRasterizer r = getRasterizer();
+        r.moveTo(xPoints[0] + originX, yPoints[0] + originY);
+        for (int i = 1; i < nPoints; i++) {
+            r.lineTo(xPoints[i] + originX, yPoints[i] + originY);
         }
+        fillPath(r, ScanlineRasterizer.WIND_EVEN_ODD);
     }
 
     /** Draws an oval to fit in the given rectangle */
     public void drawOval(int x, int y, int w, int h) {
-
-        int     startX;
-        int     endX;
-        int     offset;
-        int[]   xList;
-        int[]   yList;
-        int     numPoints;
-        int     count;
-        float   as;
-        float   bs;
-
-        if (w <= 0 || h <=0 ) {
+        if (w < 0 || h < 0) {
             return;
         }
 
-        count = 0;
-        numPoints = ((h/2) + (h/2) + 1) * 2;
-        numPoints += 1; // to close
-        xList = new int[numPoints];
-        yList = new int[numPoints];
-
-        as = (w/2.0f) * (w/2.0f);
-        bs = (h/2.0f) * (h/2.0f);
-
-        for (int i = -h/2; i <= h/2; i++) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + w/2;
-
-            xList[count] = startX;
-            yList[count] = y + i + h/2;
-            count++;
-        }
-
-        for (int i = h/2; i >= -h/2; i--) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            endX    = x + offset + w/2;
-
-            xList[count] = endX;
-            yList[count] = y + i + h/2;
-            count++;
-        }
-
-        xList[count] = xList[0];        // close the loop
-        yList[count] = yList[0];        // close the loop
-
-        drawPolyline(xList, yList, numPoints);
+        ScanlineRasterizer r = getRasterizer();
+        r.arc(x + originX + w / 2.0, y + originY + h / 2.0, w / 2.0, h / 2.0, 0, 360);
+        drawPath(r, true);
     }
 
     /** Fills an oval to fit in the given rectangle */
     public void fillOval(int x, int y, int w, int h) {
-
-        int     startX;
-        int     endX;
-        int     offset;
-        int     colour;
-        float   as;
-        float   bs;
-
         if (w <= 0 || h <= 0) {
             return;
         }
 
-        as = (w/2.0f) * (w/2.0f);
-        bs = (h/2.0f) * (h/2.0f);
-        colour = foreground.getRGB();
-
-        for(int i=-h/2; i<=h/2; i++) {
-            offset  = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + w/2;
-            endX    = x + offset + w/2;
-
-            drawSpan(startX, y + i + h/2, endX - startX + 1, colour);
-        }
+        ScanlineRasterizer r = getRasterizer();
+        r.arc(x + originX + w / 2.0, y + originY + h / 2.0, w / 2.0, h / 2.0, 0, 360);
+        fillPath(r, ScanlineRasterizer.WIND_NON_ZERO);
     }
 
     /**
-     * Draws an arc bounded by the given rectangle from startAngle to
-     * endAngle. 0 degrees is a vertical line straight up from the
-     * center of the rectangle. Positive start angle indicate clockwise
-     * rotations, negative angle are counter-clockwise.
+     * Draws an elliptical arc bounded by the given rectangle.
+     * 0 degrees is at 3 o'clock position, positive angles are
+     * counter-clockwise. Angles are relative to the bounding rectangle:
+     * 45 degrees always falls on the line from center to upper right corner.
      */
-    public void drawArc(int x, int y, int w, int h, int startAngle, int endAngle) {
-        logger.unimplemented("drawArc");
+    public void drawArc(int x, int y, int w, int h, int startAngle, int arcAngle) {
+        if (w < 0 || h < 0 || arcAngle == 0) {
+            return;
+        }
+
+        ScanlineRasterizer r = getRasterizer();
+        r.arc(x + originX + w / 2.0, y + originY + h / 2.0, w / 2.0, h / 2.0,
+              startAngle, Math.max(-360, Math.min(360, arcAngle)));
+        drawPath(r, false);
     }
 
-    /** fills an arc. arguments are the same as drawArc. */
-    public void fillArc(int x, int y, int w, int h, int startAngle, int endAngle) {
-        logger.unimplemented("fillArc");
+    /** Fills a pie shaped arc. Arguments are the same as in drawArc. */
+    public void fillArc(int x, int y, int w, int h, int startAngle, int arcAngle) {
+        if (w <= 0 || h <= 0 || arcAngle == 0) {
+            return;
+        }
+
+        double cx = x + originX + w / 2.0;
+        double cy = y + originY + h / 2.0;
+
+        ScanlineRasterizer r = getRasterizer();
+        if (arcAngle >= 360 || arcAngle <= -360) {
+            r.arc(cx, cy, w / 2.0, h / 2.0, 0, 360);
+        } else {
+            r.moveTo(cx, cy);
+            r.arc(cx, cy, w / 2.0, h / 2.0, startAngle, arcAngle);
+        }
+        fillPath(r, ScanlineRasterizer.WIND_NON_ZERO);
     }
 
     /** Draws a rounded rectangle. */
     public void drawRoundRect(int x, int y, int w, int h, int arcWidth, int arcHeight) {
-
-        int[]   xList;
-        int[]   yList;
-        int     numPoints;
-        int     count;
-        int     startX;
-        int     endX;
-        int     offset;
-
-        if (w <= 0 || h <= 0) {
+        if (w < 0 || h < 0) {
             return;
         }
 
@@ -783,134 +1215,227 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
             return;
         }
 
-        if (arcWidth < 0) {                // matches behaviour of normal java version
-            arcWidth *= -1;
-        }
-
-        if (arcHeight < 0) {
-            arcHeight *= -1;
-        }
-
-        count = 0;
-        numPoints = ((arcHeight/2) + 1) * 2;
-        numPoints += ((arcHeight/2) + 1) * 2;
-        numPoints += 1; // last point to close the loop
-
-        xList = new int[numPoints];
-        yList = new int[numPoints];
-
-        float as = (arcWidth/2.0f)  * (arcWidth/2.0f);
-        float bs = (arcHeight/2.0f) * (arcHeight/2.0f);
-
-        // draw top curved half of box
-
-        for (int i = 0; -arcHeight/2 <= i; i--) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + arcWidth/2;
+        ScanlineRasterizer r = getRasterizer();
+        roundRectPath(r, x + originX, y + originY, w, h, arcWidth, arcHeight);
+        drawPath(r, true);
+    }
 
-            xList[count] = startX;
-            yList[count] = y+i+(arcHeight/2);
-            count++;
+    /** Draws a filled rounded rectangle. */
+    public void fillRoundRect(int x, int y, int w, int h, int arcWidth, int arcHeight) {
+        if (w <= 0 || h <= 0) {
+            return;
         }
 
-        for (int i = -arcHeight / 2; i <= 0; i++) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            endX    = x + offset + (w-arcWidth) + arcWidth/2;
-
-            xList[count] = endX;
-            yList[count] = y + i + (arcHeight/2);
-            count++;
+        if (arcWidth == 0 || arcHeight == 0) {
+            fillRect(x, y, w, h);
+            return;
         }
 
-        // draw bottom box
-        for (int i = 0; i <= arcHeight / 2; i++) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + arcWidth/2;
-            endX    = x + offset + (w - arcWidth) + arcWidth/2;
+        ScanlineRasterizer r = getRasterizer();
+        roundRectPath(r, x + originX, y + originY, w, h, arcWidth, arcHeight);
+        fillPath(r, ScanlineRasterizer.WIND_NON_ZERO);
+    }
 
-            xList[count] = endX;
-            yList[count] = y + i + h - arcHeight/2;
-            count++;
-        }
+    private static void roundRectPath(ScanlineRasterizer r, int x, int y, int w, int h,
+                                      int arcWidth, int arcHeight) {
+        // negative arc size matches behaviour of normal java version
+        double rx = Math.min(Math.abs(arcWidth), w) / 2.0;
+        double ry = Math.min(Math.abs(arcHeight), h) / 2.0;
 
-        // draw bottom box
-        for (int i = arcHeight / 2; i >= 0; i--) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + arcWidth/2;
-            endX    = x + offset + (w-arcWidth) + arcWidth/2;
+        r.arc(x + w - rx, y + ry,     rx, ry,   0, 90);
+        r.arc(x + rx,     y + ry,     rx, ry,  90, 90);
+        r.arc(x + rx,     y + h - ry, rx, ry, 180, 90);
+        r.arc(x + w - rx, y + h - ry, rx, ry, 270, 90);
+    }
 
-            xList[count] = startX;
-            yList[count] = y+i+h-arcHeight/2;
-            count++;
+    private ScanlineRasterizer getRasterizer() {
+        if (rasterizer == null) {
+            rasterizer = new ScanlineRasterizer();
         }
-
-        xList[count] = xList[0];
-        yList[count] = yList[0];
-
-        drawPolyline(xList, yList, numPoints);
+        rasterizer.reset();
+        return rasterizer;
     }
 
-    /** Draws a filled rounded rectangle. */
-    public void fillRoundRect(int x, int y, int w, int h, int arcWidth, int arcHeight) {
-
-        int startX;
-        int endX;
-        int offset;
-        int colour;
+    /* fill path (device coordinates) with foreground color */
+    private void fillPath(ScanlineRasterizer r, int rule) {
+        r.fill(this, rule, foreground.getRGB(), clipX0, clipY0, clipX1, clipY1);
+    }
 
-        if (w <= 0 || h <= 0) {
+    /* draw path (device coordinates) outline */
+    private void drawPath(ScanlineRasterizer r, boolean close) {
+        int n = r.getPointCount();
+        if (n < 1) {
             return;
         }
-
-        if (arcWidth == 0 || arcHeight == 0) {
-            fillRect(x,y,w,h);
+        int x0 = r.getX(0);
+        int y0 = r.getY(0);
+        int px = x0;
+        int py = y0;
+        if (n == 1) {
+            drawPointN(x0, y0, foreground.getRGB());
             return;
         }
-
-        if (arcWidth < 0) {                // matches behaviour of normal java version
-            arcWidth *= -1;
+        for (int i = 1; i < n; i++) {
+            int x = r.getX(i);
+            int y = r.getY(i);
+            if (x != px || y != py) {
+                drawLineN(px, py, x, y);
+                px = x;
+                py = y;
+            }
         }
-
-        if (arcHeight < 0) {
-            arcHeight *= -1;
+        if (close && (px != x0 || py != y0)) {
+            drawLineN(px, py, x0, y0);
         }
+    }
 
-        float as = (arcWidth/2.0f)  * (arcWidth/2.0f);
-        float bs = (arcHeight/2.0f) * (arcHeight/2.0f);
+    /** Draws the given string. */
+    public void drawString(String string, int x, int y) {
+        if (fontMetrics != null) {
+            drawStringN(fontMetrics, string, x + originX, y + originY, foreground.getRGB());
+        }
+    }
 
-        colour = foreground.getRGB();
+    protected void drawStringN(BDFontMetrics fm, String string, int x, int y, int rgb) {
+        GlyphCache.Glyph[] glyphs = fm.getGlyphs(string);
+        int[] kerning = fm.getKerning(string);
 
-        // draw top curved half of box
-        for (int i = -arcHeight/2; i < 0; i++) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + arcWidth/2;
-            endX    = x + offset + (w - arcWidth) + arcWidth/2;
+        /* bounding box of string */
+        int bx0 = Integer.MAX_VALUE, by0 = Integer.MAX_VALUE;
+        int bx1 = Integer.MIN_VALUE, by1 = Integer.MIN_VALUE;
+        int pen = x;
+        for (int i = 0; i < glyphs.length; i++) {
+            GlyphCache.Glyph g = glyphs[i];
+            if (g.width > 0 && g.height > 0) {
+                bx0 = Math.min(bx0, pen + g.left);
+                by0 = Math.min(by0, y - g.top);
+                bx1 = Math.max(bx1, pen + g.left + g.width);
+                by1 = Math.max(by1, y - g.top + g.height);
+            }
+            pen += g.advance;
+            if (kerning != null && i < kerning.length) {
+                pen += kerning[i];
+            }
+        }
 
-            drawSpan(startX, y + i + (arcHeight/2), endX - startX + 1, colour);
+        /* clip */
+        bx0 = Math.max(bx0, clipX0);
+        by0 = Math.max(by0, clipY0);
+        bx1 = Math.min(bx1, clipX1);
+        by1 = Math.min(by1, clipY1);
+        if (bx1 <= bx0 || by1 <= by0) {
+            return;
         }
 
-        // draw middle section
-        for (int i = 0; i < h - arcHeight; i++) {
-            drawSpan(x, y + i + arcHeight/2, w, colour);
+        /* combine visible parts of glyph masks to one string mask */
+        int w = bx1 - bx0;
+        int h = by1 - by0;
+        if (textMask == null || textMask.length < w * h) {
+            textMask = new byte[w * h];
+        } else {
+            for (int i = 0; i < w * h; i++) {
+                textMask[i] = 0;
+            }
         }
 
-        // draw bottom box
-        for (int i = 0; i <= arcHeight/2; i++) {
-            offset = (int) Math.sqrt( (1.0 - ((i*i)/bs)) * as );
-            startX  = x - offset + arcWidth/2;
-            endX    = x + offset + (w - arcWidth) + arcWidth/2;
+        pen = x;
+        for (int i = 0; i < glyphs.length; i++) {
+            GlyphCache.Glyph g = glyphs[i];
+            int gx = pen + g.left;
+            int gy = y - g.top;
+            pen += g.advance;
+            if (kerning != null && i < kerning.length) {
+                pen += kerning[i];
+            }
 
-            drawSpan(startX, y + i + h - 1 - arcHeight/2, endX - startX + 1, colour);
+            int x0 = Math.max(gx, bx0);
+            int y0 = Math.max(gy, by0);
+            int x1 = Math.min(gx + g.width, bx1);
+            int y1 = Math.min(gy + g.height, by1);
+            for (int Y = y0; Y < y1; Y++) {
+                int m   = (Y - gy) * g.width + (x0 - gx);
+                int d   = (Y - by0) * w + (x0 - bx0);
+                int end = d + (x1 - x0);
+                for (; d < end; d++, m++) {
+                    /* overlapping glyphs (kerning): keep max. coverage */
+                    if ((g.mask[m] & 0xff) > (textMask[d] & 0xff)) {
+                        textMask[d] = g.mask[m];
+                    }
+                }
+            }
         }
+
+        drawMaskN(bx0, by0, w, h, textMask, rgb);
     }
 
-    protected native void drawStringN(long ftFace, String string, int x, int y, int rgb);
+    /** Draws solid color through an alpha mask (w * h bytes). */
+    private void drawMaskN(int x, int y, int w, int h, byte[] mask, int rgb) {
+        int x0 = Math.max(x, clipX0);
+        int y0 = Math.max(y, clipY0);
+        int x1 = Math.min(x + w, clipX1);
+        int y1 = Math.min(y + h, clipY1);
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
 
-    /** Draws the given string. */
-    public void drawString(String string, int x, int y) {
-        if (fontMetrics != null) {
-            fontMetrics.drawString((BDGraphics)this, string, x, y, foreground.getRGB());
+        int length = x1 - x0;
+        int color  = rgb & 0x00ffffff;
+        int As     = rgb >>> 24;
+
+        if (xorColor == null && composite.getRule() == AlphaComposite.SRC_OVER) {
+            /* common case: blend directly to back buffer */
+            int ea = getExtraAlpha();
+            if (ea < 255) {
+                As = div255(As * ea);
+            }
+            if (As == 0) {
+                return;
+            }
+            if (PixelFormat.PREMULTIPLIED) {
+                int opaque = 0xff000000 | color;
+                for (int Y = y0; Y < y1; Y++) {
+                    int m   = (Y - y) * w + (x0 - x);
+                    int d   = bufferOffset + Y * stride + x0;
+                    int end = d + length;
+                    for (; d < end; d++, m++) {
+                        int a = div255((mask[m] & 0xff) * As);
+                        if (a == 255) {
+                            backBuffer[d] = opaque;
+                        } else if (a != 0) {
+                            backBuffer[d] = PixelFormat.mul(opaque, a) + PixelFormat.mul(backBuffer[d], 255 - a);
+                        }
+                    }
+                }
+            } else {
+                for (int Y = y0; Y < y1; Y++) {
+                    int m   = (Y - y) * w + (x0 - x);
+                    int d   = bufferOffset + Y * stride + x0;
+                    int end = d + length;
+                    for (; d < end; d++, m++) {
+                        int a = div255((mask[m] & 0xff) * As);
+                        if (a == 255) {
+                            backBuffer[d] = 0xff000000 | color;
+                        } else if (a != 0) {
+                            backBuffer[d] = blend(backBuffer[d], color, a);
+                        }
+                    }
+                }
+            }
+        } else {
+            /* expand mask row to ARGB and use generic span blitter */
+            if (tmpLine == null || tmpLine.length < length) {
+                tmpLine = new int[Math.max(1920, length)];
+            }
+            for (int Y = y0; Y < y1; Y++) {
+                int m = (Y - y) * w + (x0 - x);
+                for (int i = 0; i < length; i++) {
+                    tmpLine[i] = PixelFormat.fromARGB((div255((mask[m + i] & 0xff) * As) << 24) | color);
+                }
+                blitSpanN(bufferOffset + Y * stride + x0, length, tmpLine, 0, false);
+            }
         }
+
+        dirty.add(x0, y0, x1 - 1, y1 - 1);
     }
 
     /** Draws the given character array. */
@@ -1050,8 +1575,9 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
         if (dw < 0) dw = bdImage.width;
         if (dh < 0) dh = bdImage.height;
 
-        int   stride   = bdImage.width;
-        int[] rgbArray = bdImage.getBdBackBuffer();
+        int   srcStride = bdImage.getBdStride();
+        int   srcOffset = bdImage.getBdOffset();
+        int[] rgbArray  = bdImage.getBdBackBuffer();
         int   bgColor  = 0;
 
         if (bg != null) {
@@ -1065,156 +1591,51 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
 
         // resize if needed
         if (dw != sw || dh != sh) {
-            drawResizeBilinear(rgbArray, (sy * stride) + sx, stride, sw, sh,
-                               dx, dy, dw, dh, flipX, flipY);
-            return true;
+            rgbArray = ImageScaler.getScaled(bdImage, sx, sy, sw, sh, dw, dh,
+                                             getScaleQuality(bdImage));
+            srcStride = dw;
+            srcOffset = 0;
+            sx = 0;
+            sy = 0;
         }
 
         // draw actual colour array
         if (flipY) {
             for (int i = 0; i < dh; i++) {
-                drawSpan(dx, dy + dh - 1 - i, dw, rgbArray, (stride * (i + sy)) + sx, flipX);
+                drawSpan(dx, dy + dh - 1 - i, dw, rgbArray, srcOffset + (srcStride * (i + sy)) + sx, flipX);
             }
         } else {
             for (int i = 0; i < dh; i++) {
-                drawSpan(dx, dy + i, dw, rgbArray, (stride * (i + sy)) + sx, flipX);
+                drawSpan(dx, dy + i, dw, rgbArray, srcOffset + (srcStride * (i + sy)) + sx, flipX);
             }
         }
 
         return true;
     }
 
-    /**
-     * Bilinear resize ARGB image.
-     *
-     * @param pixels Source image pixels.
-     * @param sw Source image width.
-     * @param sh Source image height.
-     * @param dw New width.
-     * @param dh New height.
-     * @return New array with size dw * dh.
-     */
-    private int[] tmpLine = null;
-    private void drawResizeBilinear(int[] pixels, int offset, int scansize, int sw, int sh,
-                                    int dx, int dy, int dw, int dh, boolean flipX, boolean flipY) {
-
-        if (sw == 1 && sh == 1) {
-            for (int Y = dy; Y < (dy + dh); Y++)
-                drawSpan(dx, Y, dw, pixels[offset]);
-            return;
-        }
-
-        // a quick hack for 1D arrays, stretch them to make them 2D
-        if (sw == 1) {
-            int[] temp = new int[2 * sh];
-
-            for (int i = 0; i < sw * sh; i++) {
-                temp[(i * 2) + 0] = pixels[offset + i];
-                temp[(i * 2) + 1] = pixels[offset + i];
-            }
-
-            scansize = 2;
-            pixels = temp;
-            offset = 0;
-            sw = 2;
-
-        } else if (sh == 1) {
-            int[] temp = new int[sw * 2];
-
-            System.arraycopy(pixels, offset, temp,  0, sw);
-            System.arraycopy(pixels, offset, temp, sw, sw);
-
-            scansize = sw;
-            pixels = temp;
-            offset = 0;
-            sh = 2;
-        }
-
-        if (tmpLine == null || tmpLine.length < dw + 1) {
-            tmpLine = new int[Math.max(1920, dw + 1)];
-        }
-
-        int a, b, c, d, x, y, index;
-        float x_ratio = ((float)(sw - 1)) / dw;
-        float y_ratio = ((float)(sh - 1)) / dh;
-        float x_diff, y_diff, blue, red, green, alpha;
-        int position = 0;
-        for (int i = 0; i < dh; i++) {
-            for (int j = 0; j < dw; j++) {
-                x      = (int)(x_ratio * j);
-                y      = (int)(y_ratio * i);
-                x_diff = (x_ratio * j) - x;
-                y_diff = (y_ratio * i) - y;
-                index  = (y * scansize + x);
-                index += offset;
-
-                a = pixels[index];
-                b = pixels[index + 1];
-                c = pixels[index + scansize];
-                d = pixels[index + scansize + 1];
-
-                int aA = a >>> 24;
-                int bA = b >>> 24;
-                int cA = c >>> 24;
-                int dA = d >>> 24;
-
-                if (aA + bA + cA + dA < 1) {
-                    tmpLine[position++] = 0;
-                    continue;
-                }
-
-                /* calculate areas, weighted with alpha */
-                float aFactor = (1-x_diff) * (1-y_diff) * aA;
-                float bFactor = x_diff     * (1-y_diff) * bA;
-                float cFactor = (1-x_diff) * y_diff     * cA;
-                float dFactor = x_diff     * y_diff     * dA;
-
-                // alpha element
-                // Yr = Ar(1-w)(1-h) + Br(w)(1-h) + Cr(h)(1-w) + Dr(wh)
-                alpha = aFactor + bFactor + cFactor + dFactor;
-
-                // blue element
-                // Yb = Ab(1-w)(1-h) + Bb(w)(1-h) + Cb(h)(1-w) + Db(wh)
-                blue = (a & 0xff) * aFactor +
-                       (b & 0xff) * bFactor +
-                       (c & 0xff) * cFactor +
-                       (d & 0xff) * dFactor;
-
-                // green element
-                // Yg = Ag(1-w)(1-h) + Bg(w)(1-h) + Cg(h)(1-w) + Dg(wh)
-                green = ((a >> 8) & 0xff) * aFactor +
-                        ((b >> 8) & 0xff) * bFactor +
-                        ((c >> 8) & 0xff) * cFactor +
-                        ((d >> 8) & 0xff) * dFactor;
-
-                // red element
-                // Yr = Ar(1-w)(1-h) + Br(w)(1-h) + Cr(h)(1-w) + Dr(wh)
-                red = ((a >> 16) & 0xff) * aFactor +
-                      ((b >> 16) & 0xff) * bFactor +
-                      ((c >> 16) & 0xff) * cFactor +
-                      ((d >> 16) & 0xff) * dFactor;
-
-                blue  /= alpha;
-                green /= alpha;
-                red   /= alpha;
-
-                tmpLine[position++] =
-                    ((((int)alpha) << 24) & 0xff000000) |
-                    ((((int)red  ) << 16) & 0x00ff0000) |
-                    ((((int)green) << 8 ) & 0x0000ff00) |
-                    ((((int)blue )      ) & 0x000000ff);
-            }
+    /* scaling quality: rendering hint of this graphics, hint of image, or bilinear */
+    void setScaleQuality(int quality) {
+        scaleQuality = quality;
+    }
 
-            if (flipY) {
-                drawSpan(dx, dy + dh - 1 - i, dw, tmpLine, 0, flipX);
-            } else {
-                drawSpan(dx, dy + i, dw, tmpLine, 0, flipX);
-            }
+    int getScaleQuality() {
+        return scaleQuality;
+    }
 
-            position = 0;
+    private int getScaleQuality(BDImageBase image) {
+        if (scaleQuality >= 0) {
+            return scaleQuality;
         }
+        if (image.getScaleQuality() >= 0) {
+            return image.getScaleQuality();
+        }
+        return ImageScaler.BILINEAR;
     }
 
+    private int[] tmpLine = null;
+    private byte[] textMask = null;
+    private ScanlineRasterizer rasterizer = null;
+
     public Stroke getStroke() {
         logger.unimplemented("getStroke");
         throw new Error();
@@ -1226,6 +1647,7 @@ abstract class BDGraphicsBase extends Graphics2D implements ConstrainableGraphic
 
     public void dispose() {
         tmpLine = null;
+        rasterizer = null;
     }
 
     public String toString() {
@@ -0,0 +1,264 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.util.Arrays;
+
+/*
+ * Animation frames packed to one off-screen image.
+ *
+ * Frames are decoded, scaled and converted to internal pixel format
+ * once. Each frame is trimmed to the bounding box of its non-transparent
+ * pixels, so drawing a frame copies or blends only the visible area.
+ * Frames are placed to the atlas in rows (shelves).
+ *
+ * Atlases are a second copy of the frames: memory used by all atlases is
+ * limited to 1/4 of image memory (bluray.memory.images). If an atlas
+ * does not fit, frames should be drawn directly.
+ */
+
+public class BDImageAtlas {
+
+    /* maximum atlas width, wider frames get a row of their own */
+    private static final int MAX_WIDTH = 2048;
+
+    /* max. memory used by all atlases */
+    private static final long MAX_BYTES = ImageCache.getDefaultLimit() / 4;
+    private static long totalBytes = 0;
+
+    /*
+     * Create atlas from images. Each image is scaled by scaleFactor.
+     * Images must be loaded (MediaTracker).
+     * Returns null if atlas does not fit to memory limit.
+     */
+    public static BDImageAtlas create(Image[] images, int scaleFactor) {
+        BDImageAtlas atlas = new BDImageAtlas(images.length);
+        if (!atlas.build(images, scaleFactor)) {
+            return null;
+        }
+        return atlas;
+    }
+
+    private BDImageAtlas(int count) {
+        frameWidth  = new int[count];
+        frameHeight = new int[count];
+        bounds      = new Rectangle[count];
+        position    = new Point[count];
+    }
+
+    private boolean build(Image[] images, int scaleFactor) {
+        int count = images.length;
+        int maxW = 0, maxH = 0;
+        for (int i = 0; i < count; i++) {
+            frameWidth[i]  = Math.max(0, images[i].getWidth(null)) * scaleFactor;
+            frameHeight[i] = Math.max(0, images[i].getHeight(null)) * scaleFactor;
+            maxW = Math.max(maxW, frameWidth[i]);
+            maxH = Math.max(maxH, frameHeight[i]);
+            bounds[i] = new Rectangle();
+            position[i] = new Point();
+        }
+        if (maxW <= 0 || maxH <= 0) {
+            return false;
+        }
+
+        /* first pass: find frame bounding boxes and layout. Pixels are not kept. */
+        BDImage frame = new BDImage(null, maxW, maxH, null);
+        int shelfX = 0, shelfY = 0, shelfH = 0, atlasW = 0;
+        for (int i = 0; i < count; i++) {
+            if (frameWidth[i] <= 0 || frameHeight[i] <= 0) {
+                continue;
+            }
+            int[] pixels = render(frame, images[i], frameWidth[i], frameHeight[i]);
+            Rectangle r = findBounds(pixels, maxW, frameWidth[i], frameHeight[i]);
+            if (r.isEmpty()) {
+                continue;
+            }
+            bounds[i] = r;
+
+            if (shelfX > 0 && shelfX + r.width > MAX_WIDTH) {
+                shelfY += shelfH;
+                shelfX = 0;
+                shelfH = 0;
+            }
+            position[i].setLocation(shelfX, shelfY);
+            shelfX += r.width;
+            shelfH = Math.max(shelfH, r.height);
+            atlasW = Math.max(atlasW, shelfX);
+
+            /* stop early if atlas can't fit */
+            if (!fits((long)atlasW * (shelfY + shelfH) * 4)) {
+                return false;
+            }
+        }
+        int atlasH = shelfY + shelfH;
+        if (atlasW <= 0 || atlasH <= 0) {
+            /* all frames are transparent */
+            return true;
+        }
+
+        if (!reserve((long)atlasW * atlasH * 4)) {
+            return false;
+        }
+        bytes = (long)atlasW * atlasH * 4;
+
+        /* second pass: copy trimmed frames to atlas */
+        atlas = new BDImage(null, atlasW, atlasH, null);
+        int[] dst = atlas.getBdBackBuffer();
+        for (int i = 0; i < count; i++) {
+            Rectangle r = bounds[i];
+            if (r.isEmpty()) {
+                continue;
+            }
+            int[] pixels = render(frame, images[i], frameWidth[i], frameHeight[i]);
+            Point p = position[i];
+            for (int y = 0; y < r.height; y++) {
+                System.arraycopy(pixels, (r.y + y) * maxW + r.x, dst, (p.y + y) * atlasW + p.x, r.width);
+            }
+        }
+        return true;
+    }
+
+    private static synchronized boolean fits(long size) {
+        return totalBytes + size <= MAX_BYTES;
+    }
+
+    private static synchronized boolean reserve(long size) {
+        if (totalBytes + size > MAX_BYTES) {
+            return false;
+        }
+        totalBytes += size;
+        return true;
+    }
+
+    private static synchronized void release(long size) {
+        totalBytes -= size;
+    }
+
+    public int getFrameCount() {
+        return bounds.length;
+    }
+
+    /* size of scaled frame */
+    public Dimension getFrameSize(int index) {
+        return new Dimension(frameWidth[index], frameHeight[index]);
+    }
+
+    /* bounding box of non-transparent pixels in frame. Empty if frame is fully transparent. */
+    public Rectangle getBounds(int index) {
+        return new Rectangle(bounds[index]);
+    }
+
+    /* atlas memory usage (bytes) */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    /*
+     * Draw frame at x, y using current composite of g.
+     * Only frame bounding box is drawn.
+     */
+    public boolean drawFrame(Graphics g, int index, int x, int y) {
+        Rectangle r = bounds[index];
+        BDImage atlas = this.atlas;
+        if (atlas == null || r.isEmpty()) {
+            return true;
+        }
+        Point p = position[index];
+        x += r.x;
+        y += r.y;
+        return g.drawImage(atlas, x, y, x + r.width, y + r.height,
+                           p.x, p.y, p.x + r.width, p.y + r.height, null);
+    }
+
+    public void dispose() {
+        long size;
+        synchronized (this) {
+            size = bytes;
+            bytes = 0;
+            atlas = null;
+        }
+        release(size);
+    }
+
+    protected void finalize() throws Throwable {
+        try {
+            dispose();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /*
+     *
+     */
+
+    /* render (and scale) image to top-left corner of frame buffer */
+    private static int[] render(BDImage frame, Image image, int w, int h) {
+        int[] pixels = frame.getBdBackBuffer();
+        Arrays.fill(pixels, 0);
+        Graphics g = frame.getGraphics();
+        try {
+            g.drawImage(image, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return pixels;
+    }
+
+    /* bounding box of pixels with non-zero alpha */
+    private static Rectangle findBounds(int[] pixels, int stride, int w, int h) {
+        int x0 = w, y0 = h, x1 = -1, y1 = -1;
+        for (int y = 0; y < h; y++) {
+            int line = y * stride;
+            int first = -1;
+            for (int x = 0; x < w; x++) {
+                if ((pixels[line + x] >>> 24) != 0) {
+                    first = x;
+                    break;
+                }
+            }
+            if (first < 0) {
+                continue;
+            }
+            int last = first;
+            for (int x = w - 1; x > first; x--) {
+                if ((pixels[line + x] >>> 24) != 0) {
+                    last = x;
+                    break;
+                }
+            }
+            x0 = Math.min(x0, first);
+            x1 = Math.max(x1, last);
+            y0 = Math.min(y0, y);
+            y1 = y;
+        }
+        if (x1 < 0) {
+            return new Rectangle();
+        }
+        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    private BDImage atlas = null;
+    private long bytes = 0;
+    private final int[] frameWidth;
+    private final int[] frameHeight;
+    private final Rectangle[] bounds;
+    private final Point[] position;
+}
@@ -23,15 +23,12 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Vector;
 import java.util.Enumeration;
-import java.awt.color.ColorSpace;
-import java.awt.image.AreaAveragingScaleFilter;
-import java.awt.image.DataBuffer;
-import java.awt.image.DirectColorModel;
 import java.awt.image.ImageConsumer;
 import java.awt.image.ImageProducer;
 import java.awt.image.ImageObserver;
 import java.awt.image.ColorModel;
 import java.awt.image.BufferedImage;
+import java.awt.image.RasterFormatException;
 
 class BDImageBase extends Image {
     private static Constructor bufferedImageConstructor;
@@ -39,10 +36,14 @@ class BDImageBase extends Image {
     private Component component;
     protected int width, height;
     protected int[] backBuffer;
-    protected Area dirty;
+    /* sub-image views share pixels of parent image: first pixel and line length in backBuffer */
+    protected int offset = 0;
+    protected int stride = 0;    /* 0: stride == width */
+    protected DirtyRegion dirty;
     private GraphicsConfiguration gc;
     private Vector observers = new Vector();
     private ImageProducer offscreenSource = null;
+    private int scaleQuality = -1;
 
     static {
         try {
@@ -78,9 +79,51 @@ class BDImageBase extends Image {
         if (width > 0 && height > 0)
             backBuffer = new int[width * height];
 
-        dirty = new Area(width, height);
+        dirty = new DirtyRegion(width, height);
 
-        offscreenSource = new BDOffScreenImageSource(backBuffer, width, height);
+        offscreenSource = new BDOffScreenImageSource(backBuffer, 0, width, width, height);
+    }
+
+    /*
+     * View to area of parent image. Pixels are not copied.
+     * Changes to view are added to dirty region of parent (translated to
+     * parent coordinates), and view uses modification count of parent, so
+     * cached scalings of both images are invalidated when shared pixels change.
+     */
+    BDImageBase(BDImageBase parent, int x, int y, int width, int height) {
+
+        this.component = parent.component;
+        this.width = width;
+        this.height = height;
+        this.gc = parent.gc;
+        this.scaleQuality = parent.scaleQuality;
+        backBuffer = parent.backBuffer;
+        offset = parent.offset + y * parent.getBdStride() + x;
+        stride = parent.getBdStride();
+
+        dirty = new ViewDirtyRegion(parent.dirty, x, y);
+
+        offscreenSource = new BDOffScreenImageSource(backBuffer, offset, stride, width, height);
+    }
+
+    /* dirty region of a sub-image view */
+    private static class ViewDirtyRegion extends DirtyRegion {
+        ViewDirtyRegion(DirtyRegion parent, int x, int y) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+        }
+
+        public int getModCount() {
+            return parent.getModCount();
+        }
+
+        public void add(int nx0, int ny0, int nx1, int ny1) {
+            parent.add(nx0 + x, ny0 + y, nx1 + x, ny1 + y);
+        }
+
+        private final DirtyRegion parent;
+        private final int x, y;
     }
 
     public void flush() {
@@ -123,14 +166,30 @@ class BDImageBase extends Image {
     }
 
     public Image getScaledInstance(int width, int height, int hints) {
+        if (width < 0 && height < 0) {
+            width = this.width;
+            height = this.height;
+        } else if (width < 0) {
+            width = this.width * height / this.height;
+        } else if (height < 0) {
+            height = this.height * width / this.width;
+        }
+
+        int[] pixels = backBuffer;
+        int pixelOffset = offset;
+        int scansize = getBdStride();
+        if (width != this.width || height != this.height) {
+            pixels = ImageScaler.getScaled(this, 0, 0, this.width, this.height,
+                                           width, height, ImageScaler.getQuality(hints));
+            pixelOffset = 0;
+            scansize = width;
+        }
+
         BDImageConsumer scaledImage = new BDImageConsumer(null);
-        AreaAveragingScaleFilter scaleFilter =
-            new AreaAveragingScaleFilter(width, height);
-        scaleFilter = (AreaAveragingScaleFilter)scaleFilter.getFilterInstance(scaledImage);
-        scaleFilter.setDimensions(this.width, this.height);
-        scaleFilter.setPixels(0, 0, this.width, this.height,
-                              ColorModel.getRGBdefault(), backBuffer, 0, this.width);
-        scaleFilter.imageComplete(ImageConsumer.STATICIMAGEDONE);
+        scaledImage.setDimensions(width, height);
+        scaledImage.setPixels(0, 0, width, height,
+                              PixelFormat.getColorModel(), pixels, pixelOffset, scansize);
+        scaledImage.imageComplete(ImageConsumer.STATICIMAGEDONE);
         return scaledImage;
     }
 
@@ -146,15 +205,34 @@ class BDImageBase extends Image {
         return backBuffer;
     }
 
+    /* index of first pixel in backBuffer */
+    int getBdOffset() {
+        return offset;
+    }
+
+    /* distance between lines in backBuffer */
+    int getBdStride() {
+        return (stride > 0) ? stride : width;
+    }
+
     protected int[] getBackBuffer() {
         System.err.println("**** BDIMAGE GETBACKBUFFER ****");
         return backBuffer;
     }
 
-    protected Area getDirtyArea() {
+    protected DirtyRegion getDirtyArea() {
         return dirty;
     }
 
+    /* scaling quality hint, -1 if not set */
+    void setScaleQuality(int quality) {
+        scaleQuality = quality;
+    }
+
+    int getScaleQuality() {
+        return scaleQuality;
+    }
+
     public GraphicsConfiguration getGraphicsConfiguration() {
         return gc;
     }
@@ -198,44 +276,52 @@ class BDImageBase extends Image {
     }
 
     public ColorModel getColorModel() {
-        return new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
-                32, 0x00ff0000, 0x0000ff00,     0x000000ff, 0xff000000, true,
-                DataBuffer.TYPE_INT);
+        return PixelFormat.getColorModel();
     }
 
+    /* getRGB / setRGB use straight ARGB */
+
     public int getRGB(int x, int y) {
-        return backBuffer[y * width + x];
+        return PixelFormat.toARGB(backBuffer[this.offset + y * getBdStride() + x]);
     }
 
     public int[] getRGB(int x, int y, int w, int h, int[] rgbArray, int offset, int scansize) {
         if (rgbArray == null)
             rgbArray = new int[offset + h * scansize];
 
+        int s = getBdStride();
         for (int i = 0; i < h; i++)
-            System.arraycopy(backBuffer, (y + i) * width + x,
-                             rgbArray, i * scansize + offset,
-                             w);
+            PixelFormat.toARGB(backBuffer, this.offset + (y + i) * s + x,
+                               rgbArray, i * scansize + offset,
+                               w);
         return rgbArray;
     }
 
     public void setRGB(int x, int y, int rgb) {
-        backBuffer[y * width + x] = rgb;
+        backBuffer[this.offset + y * getBdStride() + x] = PixelFormat.fromARGB(rgb);
 
         dirty.add(x, y);
     }
 
     public void setRGB(int x, int y, int w, int h, int[] rgbArray, int offset, int scansize) {
-        for (int i = 0; i < h; i++)
+        int s = getBdStride();
+        for (int i = 0; i < h; i++) {
+            int d = this.offset + (y + i) * s + x;
             System.arraycopy(rgbArray, i * scansize + offset,
-                             backBuffer, (y + i) * width + x,
+                             backBuffer, d,
                              w);
-        dirty.add(new Rectangle(x, y, w, h));
+            PixelFormat.fromARGB(backBuffer, d, w);
+        }
+        dirty.add(x, y, x + w - 1, y + h - 1);
     }
 
+    /* sub-image shares pixels with this image */
     public BufferedImage getSubimage(int x, int y, int w, int h) {
-        BDImage image = new BDImage(component, w, h, gc);
-        int[] rgbArray = image.getBdBackBuffer();
-        getRGB(x, y, w, h, rgbArray, 0, w);
+        if (x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > width || y + h > height) {
+            throw new RasterFormatException("sub-image (" + x + "," + y + " " + w + "x" + h +
+                                            ") outside of image (" + width + "x" + height + ")");
+        }
+        BDImage image = new BDImage(this, x, y, w, h);
         return createBuffededImage(image);
     }
 
@@ -25,12 +25,16 @@ import java.awt.image.ImageProducer;
 import java.awt.image.ImageObserver;
 import java.awt.image.ImageConsumer;
 import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
 
 public class BDImageConsumer extends BDImage implements ImageConsumer {
     private Hashtable properties;
     private ImageProducer producer;
     private int status;
     private boolean started;
+    private IndexColorModel lutModel;
+    private int[] lut;
 
     public BDImageConsumer(ImageProducer producer) {
         super(null, -1, -1, null);
@@ -59,6 +63,8 @@ public class BDImageConsumer extends BDImage implements ImageConsumer {
         if (observer != null)
             if (observer.imageUpdate(this, status, 0, 0, width, height))
                 addObserver(observer);
+        /* image producers decode asynchronously (sun.awt.image.ImageFetcher) */
+        startProduction();
         return false;
     }
 
@@ -102,6 +108,8 @@ public class BDImageConsumer extends BDImage implements ImageConsumer {
             notifyObservers(this, ImageObserver.ERROR, 0, 0, width, height);
             break;
         case SINGLEFRAMEDONE:
+            /* frame changed: drop scaled copies of previous frame */
+            ImageScaler.flush(this);
             status |= ImageObserver.FRAMEBITS;
             notifyObservers(this, ImageObserver.FRAMEBITS, 0, 0, width, height);
             break;
@@ -125,6 +133,7 @@ public class BDImageConsumer extends BDImage implements ImageConsumer {
             this.width = width;
             this.height = height;
             backBuffer = new int[width * height];
+            BDToolkit.updateCache(this);
             status |= ImageObserver.WIDTH | ImageObserver.HEIGHT;
             notifyObservers(this, ImageObserver.WIDTH | ImageObserver.HEIGHT, 0, 0, width, height);
         }
@@ -155,23 +164,98 @@ public class BDImageConsumer extends BDImage implements ImageConsumer {
     }
 
     public void setPixels(int x, int y, int w, int h, ColorModel cm, byte[] pixels, int offset, int scansize) {
-        int X, Y;
-        for (Y = y; Y < (y + h); Y++)
-            for (X = x; X < (x + w); X++)
-                backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)] & 0xFF);
+        int[] buf = backBuffer;
+        if (cm instanceof IndexColorModel) {
+            int[] lut = getLut((IndexColorModel)cm);
+            for (int Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (int X = 0; X < w; X++)
+                    buf[dst + X] = lut[pixels[src + X] & 0xFF];
+            }
+        } else {
+            for (int Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (int X = 0; X < w; X++)
+                    buf[dst + X] = PixelFormat.fromARGB(cm.getRGB(pixels[src + X] & 0xFF));
+            }
+        }
         status |= ImageObserver.SOMEBITS;
         notifyObservers(this, ImageObserver.SOMEBITS, x, y, w, h);
     }
 
     public void setPixels(int x, int y, int w, int h, ColorModel cm, int[] pixels, int offset, int scansize) {
-        int X, Y;
-        for (Y = y; Y < (y + h); Y++)
-            for (X = x; X < (x + w); X++)
-                backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)]);
+        int[] buf = backBuffer;
+        if (isInternalRGB(cm)) {
+            for (int Y = 0; Y < h; Y++)
+                System.arraycopy(pixels, offset + Y * scansize, buf, (y + Y) * width + x, w);
+        } else if (isDefaultRGB(cm)) {
+            for (int Y = 0; Y < h; Y++) {
+                int dst = (y + Y) * width + x;
+                System.arraycopy(pixels, offset + Y * scansize, buf, dst, w);
+                PixelFormat.fromARGB(buf, dst, w);
+            }
+        } else if (cm instanceof IndexColorModel && ((IndexColorModel)cm).getMapSize() <= 256) {
+            int[] lut = getLut((IndexColorModel)cm);
+            for (int Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (int X = 0; X < w; X++)
+                    buf[dst + X] = lut[pixels[src + X] & 0xFF];
+            }
+        } else {
+            for (int Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (int X = 0; X < w; X++)
+                    buf[dst + X] = PixelFormat.fromARGB(cm.getRGB(pixels[src + X]));
+            }
+        }
         status |= ImageObserver.SOMEBITS;
         notifyObservers(this, ImageObserver.SOMEBITS, x, y, w, h);
     }
 
+    /*
+     * Palette converted to internal pixel format.
+     * Producers use the same (immutable) color model for all rows.
+     */
+    private int[] getLut(IndexColorModel icm) {
+        if (icm != lutModel) {
+            int[] table = new int[256];
+            icm.getRGBs(table);
+            PixelFormat.fromARGB(table, 0, 256);
+            lut = table;
+            lutModel = icm;
+        }
+        return lut;
+    }
+
+    /* non-premultiplied ARGB */
+    private static boolean isDefaultRGB(ColorModel cm) {
+        if (cm == ColorModel.getRGBdefault())
+            return true;
+        return isARGB(cm, false);
+    }
+
+    /* same format as backBuffer */
+    private static boolean isInternalRGB(ColorModel cm) {
+        if (!PixelFormat.PREMULTIPLIED)
+            return isDefaultRGB(cm);
+        return isARGB(cm, true);
+    }
+
+    private static boolean isARGB(ColorModel cm, boolean premultiplied) {
+        if (!(cm instanceof DirectColorModel) || cm.isAlphaPremultiplied() != premultiplied)
+            return false;
+        DirectColorModel dcm = (DirectColorModel)cm;
+        return dcm.getPixelSize() == 32 &&
+            dcm.getRedMask() == 0x00ff0000 &&
+            dcm.getGreenMask() == 0x0000ff00 &&
+            dcm.getBlueMask() == 0x000000ff &&
+            dcm.getAlphaMask() == 0xff000000;
+    }
+
     protected synchronized void startProduction() {
         if (producer != null && !started) {
             if (!producer.isConsumer(this))
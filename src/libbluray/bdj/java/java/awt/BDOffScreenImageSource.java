@@ -21,10 +21,7 @@ package java.awt;
 
 import java.util.Hashtable;
 import java.awt.Component;
-import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
-import java.awt.image.DataBuffer;
-import java.awt.image.DirectColorModel;
 import java.awt.image.ImageConsumer;
 import java.awt.image.ImageProducer;
 
@@ -33,11 +30,15 @@ class BDOffScreenImageSource implements ImageProducer {
     private int width;
     private int height;
     private int[] buffer;
+    private int offset;
+    private int scansize;
 
-    public BDOffScreenImageSource(int[] buffer, int w, int h) {
+    public BDOffScreenImageSource(int[] buffer, int offset, int scansize, int w, int h) {
         width = w;
         height = h;
         this.buffer = buffer;
+        this.offset = offset;
+        this.scansize = scansize;
     }
 
     public synchronized void addConsumer(ImageConsumer ic) {
@@ -60,15 +61,13 @@ class BDOffScreenImageSource implements ImageProducer {
     }
 
     private ColorModel getColorModel() {
-        return new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
-                32, 0x00ff0000, 0x0000ff00,     0x000000ff, 0xff000000, true,
-                DataBuffer.TYPE_INT);
+        return PixelFormat.getColorModel();
     }
 
     private void sendPixels()
     {
         if (consumer != null) {
-            consumer.setPixels(0, 0, width, height, getColorModel(), buffer, 0, width);
+            consumer.setPixels(0, 0, width, height, getColorModel(), buffer, offset, scansize);
         }
     }
 
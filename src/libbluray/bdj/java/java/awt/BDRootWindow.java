@@ -20,8 +20,6 @@
 package java.awt;
 
 import java.util.Arrays;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.videolan.Logger;
 import org.videolan.Libbluray;
@@ -35,7 +33,7 @@ public class BDRootWindow extends Frame {
         BDToolkit.setFocusedWindow(this);
     }
 
-    public Area getDirtyArea() {
+    public DirtyRegion getDirtyArea() {
         return dirty;
     }
 
@@ -69,62 +67,71 @@ public class BDRootWindow extends Frame {
             return;
         }
         synchronized (this) {
-            if (timer == null) {
+            if (scheduler == null) {
                 logger.error("notifyChanged(): window already disposed");
                 return;
             }
-            changeCount++;
-            if (timerTask == null) {
-                timerTask = new RefreshTimerTask(this);
-                timer.schedule(timerTask, 40, 40);
+            scheduler.changed();
+        }
+    }
+
+    /* frame tick from player (video frame presented) */
+    public void frameTick() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.frameTick();
             }
         }
     }
 
-    public void sync() {
+    /* frame rate of current video */
+    public void setFrameRate(float fps) {
         synchronized (this) {
-            if (timerTask != null) {
-                timerTask.cancel();
-                timerTask = null;
+            if (scheduler != null) {
+                scheduler.setFrameRate(fps);
             }
-            changeCount = 0;
+        }
+    }
 
-            Area a = dirty.getBounds();
-            dirty.clear();
+    public void sync() {
+        synchronized (this) {
+            if (!dirty.isEmpty() && uploader != null) {
+                Area[] areas = dirty.getAreas();
 
-            if (!a.isEmpty()) {
                 if (!overlay_open) {
                     Libbluray.updateGraphic(getWidth(), getHeight(), null);
                     overlay_open = true;
-                    a = new Area(getWidth(), getHeight()); /* force full plane update */
+                    areas = new Area[] { new Area(getWidth(), getHeight()) }; /* force full plane update */
+                }
+
+                if (!uploader.submit(backBuffer, getWidth(), getHeight(), areas)) {
+                    /* previous frame is still being uploaded */
+                    return;
                 }
-                Libbluray.updateGraphic(getWidth(), getHeight(), backBuffer, a.x0, a.y0, a.x1, a.y1);
+                dirty.clear();
             }
-        }
-    }
 
-    private class RefreshTimerTask extends TimerTask {
-        public RefreshTimerTask(BDRootWindow window) {
-            this.window = window;
-            this.changeCount = window.changeCount;
+            if (scheduler != null) {
+                scheduler.flushed();
+            }
         }
+    }
 
-        public void run() {
-            synchronized (window) {
-                if (this.changeCount == window.changeCount)
-                    window.sync();
-                else
-                    this.changeCount = window.changeCount;
+    /* called by uploader when changes were made during upload */
+    void resync() {
+        synchronized (this) {
+            if (overlay_open) {
+                sync();
             }
         }
-
-        private BDRootWindow window;
-        private int changeCount;
     }
 
     private void close() {
         synchronized (this) {
             if (overlay_open) {
+                if (uploader != null) {
+                    uploader.waitIdle();
+                }
                 Libbluray.updateGraphic(0, 0, null);
                 overlay_open = false;
             }
@@ -155,13 +162,9 @@ public class BDRootWindow extends Frame {
     public void dispose()
     {
         synchronized (this) {
-            if (timerTask != null) {
-                timerTask.cancel();
-                timerTask = null;
-            }
-            if (timer != null) {
-                timer.cancel();
-                timer = null;
+            if (scheduler != null) {
+                scheduler.stop();
+                scheduler = null;
             }
         }
 
@@ -173,14 +176,20 @@ public class BDRootWindow extends Frame {
 
         super.dispose();
 
+        synchronized (this) {
+            if (uploader != null) {
+                uploader.shutdown();
+                uploader = null;
+            }
+        }
+
         backBuffer = null;
     }
 
     private int[] backBuffer = null;
-    private Area dirty = new Area();
-    private int changeCount = 0;
-    private Timer timer = new Timer();
-    private TimerTask timerTask = null;
+    private DirtyRegion dirty = new DirtyRegion();
+    private FlushScheduler scheduler = FlushScheduler.create(this);
+    private OverlayUploader uploader = new OverlayUploader(this);
     private boolean overlay_open = false;
 
     private static final Logger logger = Logger.getLogger(BDRootWindow.class.getName());
@@ -26,10 +26,8 @@ import java.awt.image.ImageProducer;
 import java.io.File;
 import java.net.URL;
 import java.util.Collections;
-import java.util.Hashtable;
 import java.util.WeakHashMap;
 import java.util.Map;
-import java.util.Iterator;
 
 import sun.awt.image.ByteArrayImageSource;
 import sun.awt.image.FileImageSource;
@@ -42,7 +40,7 @@ abstract class BDToolkitBase extends Toolkit {
     private EventQueue eventQueue = new EventQueue();
     private BDGraphicsEnvironment localEnv = new BDGraphicsEnvironment();
     private BDGraphicsConfiguration defaultGC = (BDGraphicsConfiguration)localEnv.getDefaultScreenDevice().getDefaultConfiguration();
-    private static Hashtable cachedImages = new Hashtable();
+    private static ImageCache cachedImages = new ImageCache(ImageCache.getDefaultLimit());
     private static final Logger logger = Logger.getLogger(BDToolkit.class.getName());
 
     // mapping of Components to AppContexts, WeakHashMap<Component,AppContext>
@@ -74,6 +72,7 @@ abstract class BDToolkitBase extends Toolkit {
             eventQueue = null;
         }
         */
+        ImageScaler.clear();
         cachedImages.clear();
         contextMap.clear();
     }
@@ -112,33 +111,44 @@ abstract class BDToolkitBase extends Toolkit {
     }
 
     static void clearCache(BDImage image) {
-        synchronized (cachedImages) {
-            Iterator i = cachedImages.entrySet().iterator();
-            while (i.hasNext()) {
-                Map.Entry entry = (Map.Entry) i.next();
-                if (entry.getValue() == image) {
-                    i.remove();
-                    return;
-                }
-            }
+        cachedImages.remove(image);
+        ImageScaler.flush(image);
+    }
+
+    static void updateCache(BDImage image) {
+        cachedImages.updateSize(image);
+    }
+
+    /* preferred scaling algorithm (Image.SCALE_*) when image is drawn scaled */
+    public static void setScalingHint(Image image, int hints) {
+        if (image instanceof BDImage) {
+            ((BDImage)image).setScaleQuality(ImageScaler.getQuality(hints));
         }
     }
 
+    /* drop cached images and font references of released xlet */
+    public static void releaseContext(BDJXletContext context) {
+        cachedImages.removeContext(context);
+        BDFontMetrics.releaseContext(context);
+    }
+
     public Image getImage(String filename) {
-        if (cachedImages.containsKey(filename))
-            return (Image)cachedImages.get(filename);
-        Image newImage = createImage(filename);
+        Image newImage = cachedImages.get(filename);
         if (newImage != null)
-            cachedImages.put(filename, newImage);
+            return newImage;
+        newImage = createImage(filename);
+        if (newImage instanceof BDImage)
+            cachedImages.put(filename, (BDImage)newImage, BDJXletContext.getCurrentContext());
         return newImage;
     }
 
     public Image getImage(URL url) {
-        if (cachedImages.containsKey(url))
-            return (Image)cachedImages.get(url);
-        Image newImage = createImage(url);
+        Image newImage = cachedImages.get(url);
         if (newImage != null)
-            cachedImages.put(url, newImage);
+            return newImage;
+        newImage = createImage(url);
+        if (newImage instanceof BDImage)
+            cachedImages.put(url, (BDImage)newImage, BDJXletContext.getCurrentContext());
         return newImage;
     }
 
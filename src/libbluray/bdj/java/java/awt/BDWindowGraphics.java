@@ -136,9 +136,9 @@ public class BDWindowGraphics extends BDGraphics {
         }
     }
 
-    protected void drawStringN(long ftFace, String string, int x, int y, int rgb) {
+    protected void drawStringN(BDFontMetrics fm, String string, int x, int y, int rgb) {
         synchronized (window) {
-            super.drawStringN(ftFace, string, x, y, rgb);
+            super.drawStringN(fm, string, x, y, rgb);
             window.notifyChanged();
         }
     }
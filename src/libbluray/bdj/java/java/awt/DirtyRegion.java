@@ -0,0 +1,188 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+/*
+ * Dirty region tracking.
+ *
+ * Region is stored as a bounded list of non-overlapping rectangles
+ * (inclusive coordinates, like Area).
+ * Rectangles are merged when they overlap, or when updating the
+ * bounding box of both is cheaper than updating them separately.
+ */
+
+class DirtyRegion {
+
+    /* max. number of separate rectangles */
+    private static final int MAX_RECTS = 8;
+
+    /* estimated cost (in pixels) of one extra overlay update */
+    private static final int RECT_COST = 64 * 64;
+
+    private int[] x0 = new int[MAX_RECTS];
+    private int[] y0 = new int[MAX_RECTS];
+    private int[] x1 = new int[MAX_RECTS];
+    private int[] y1 = new int[MAX_RECTS];
+    private int count = 0;
+    private int modCount = 0;
+
+    public DirtyRegion() {
+    }
+
+    public DirtyRegion(int width, int height) {
+        add(0, 0, width - 1, height - 1);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /* incremented each time something is added to the region */
+    public int getModCount() {
+        return modCount;
+    }
+
+    public void add(int x, int y) {
+        add(x, y, x, y);
+    }
+
+    public void add(Rectangle r) {
+        if ((r.x | r.width | r.y | r.height) >= 0) {
+            add(r.x, r.y, r.x + r.width - 1, r.y + r.height - 1);
+        }
+    }
+
+    public void add(int nx0, int ny0, int nx1, int ny1) {
+        if (nx1 < nx0 || ny1 < ny0) {
+            return;
+        }
+
+        modCount++;
+
+        while (true) {
+            int i;
+
+            /* already covered ? */
+            for (i = 0; i < count; i++) {
+                if (x0[i] <= nx0 && y0[i] <= ny0 && x1[i] >= nx1 && y1[i] >= ny1) {
+                    return;
+                }
+            }
+
+            /* find rectangle to merge with */
+            long newArea = area(nx0, ny0, nx1, ny1);
+            int  merge = -1;
+            for (i = 0; i < count; i++) {
+                if (overlaps(i, nx0, ny0, nx1, ny1)) {
+                    merge = i;
+                    break;
+                }
+                long union = area(Math.min(x0[i], nx0), Math.min(y0[i], ny0),
+                                  Math.max(x1[i], nx1), Math.max(y1[i], ny1));
+                if (union <= newArea + area(i) + RECT_COST) {
+                    merge = i;
+                    break;
+                }
+            }
+
+            /* list full: merge with the rectangle that grows least */
+            if (merge < 0 && count >= MAX_RECTS) {
+                long best = Long.MAX_VALUE;
+                for (i = 0; i < count; i++) {
+                    long grow = area(Math.min(x0[i], nx0), Math.min(y0[i], ny0),
+                                     Math.max(x1[i], nx1), Math.max(y1[i], ny1)) - area(i);
+                    if (grow < best) {
+                        best = grow;
+                        merge = i;
+                    }
+                }
+            }
+
+            if (merge < 0) {
+                x0[count] = nx0;
+                y0[count] = ny0;
+                x1[count] = nx1;
+                y1[count] = ny1;
+                count++;
+                return;
+            }
+
+            /* remove merged rectangle and re-insert the union
+               (union may now overlap other rectangles) */
+            nx0 = Math.min(x0[merge], nx0);
+            ny0 = Math.min(y0[merge], ny0);
+            nx1 = Math.max(x1[merge], nx1);
+            ny1 = Math.max(y1[merge], ny1);
+            remove(merge);
+        }
+    }
+
+    public void add(DirtyRegion r) {
+        for (int i = 0; i < r.count; i++) {
+            add(r.x0[i], r.y0[i], r.x1[i], r.y1[i]);
+        }
+    }
+
+    public Area getBounds() {
+        Area a = new Area();
+        for (int i = 0; i < count; i++) {
+            a.add(x0[i], y0[i]);
+            a.add(x1[i], y1[i]);
+        }
+        return a;
+    }
+
+    /* snapshot of current rectangles */
+    public Area[] getAreas() {
+        Area[] areas = new Area[count];
+        for (int i = 0; i < count; i++) {
+            areas[i] = new Area(x0[i], y0[i], x1[i], y1[i]);
+        }
+        return areas;
+    }
+
+    private boolean overlaps(int i, int nx0, int ny0, int nx1, int ny1) {
+        return x0[i] <= nx1 && nx0 <= x1[i] && y0[i] <= ny1 && ny0 <= y1[i];
+    }
+
+    private long area(int i) {
+        return area(x0[i], y0[i], x1[i], y1[i]);
+    }
+
+    private static long area(int x0, int y0, int x1, int y1) {
+        return (long)(x1 - x0 + 1) * (long)(y1 - y0 + 1);
+    }
+
+    private void remove(int i) {
+        count--;
+        x0[i] = x0[count];
+        y0[i] = y0[count];
+        x1[i] = x1[count];
+        y1[i] = y1[count];
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.videolan.Logger;
+
+/*
+ * Decides when changes in BDRootWindow are flushed to the overlay.
+ *
+ * Modes (system property bluray.overlay.flush):
+ *   "debounce" (default) - flush when drawing has stopped for one period
+ *   "video"              - flush at video frame rate
+ *   "host"               - flush at frame ticks from the player (video PTS updates)
+ *
+ * All methods are called with window lock held.
+ */
+
+abstract class FlushScheduler {
+
+    static FlushScheduler create(BDRootWindow window) {
+        String mode = System.getProperty("bluray.overlay.flush");
+        if ("video".equals(mode)) {
+            return new VideoRateScheduler(window);
+        }
+        if ("host".equals(mode)) {
+            return new HostTickScheduler(window);
+        }
+        if (mode != null && !"debounce".equals(mode)) {
+            logger.error("unknown overlay flush mode " + mode);
+        }
+        return new DebounceScheduler(window);
+    }
+
+    protected FlushScheduler(BDRootWindow window) {
+        this.window = window;
+    }
+
+    /* drawing to window */
+    void changed() {
+        if (!pending) {
+            pending = true;
+            firstChange = System.currentTimeMillis();
+        }
+        schedule();
+    }
+
+    /* window was flushed to overlay */
+    void flushed() {
+        if (pending) {
+            long latency = System.currentTimeMillis() - firstChange;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            flushCount++;
+            pending = false;
+        }
+    }
+
+    /* frame tick from player */
+    void frameTick() {
+    }
+
+    /* video frame rate changed */
+    void setFrameRate(float fps) {
+    }
+
+    void stop() {
+        logger.info("overlay flush statistics: " + this);
+    }
+
+    protected boolean isPending() {
+        return pending;
+    }
+
+    protected abstract void schedule();
+
+    /* flush pending changes to overlay */
+    protected void flush() {
+        synchronized (window) {
+            if (pending) {
+                window.sync();
+            }
+        }
+    }
+
+    int getFlushCount() {
+        return flushCount;
+    }
+
+    int getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    long getMaxLatency() {
+        return maxLatency;
+    }
+
+    long getAverageLatency() {
+        return flushCount > 0 ? totalLatency / flushCount : 0;
+    }
+
+    public String toString() {
+        return getClass().getName() + "[flushes=" + flushCount +
+            ", skipped frames=" + skippedFrames +
+            ", latency avg=" + getAverageLatency() + "ms" +
+            ", max=" + maxLatency + "ms]";
+    }
+
+    protected final BDRootWindow window;
+    protected int skippedFrames = 0;
+
+    private boolean pending = false;
+    private long firstChange = 0;
+    private int flushCount = 0;
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+
+    private static final Logger logger = Logger.getLogger(FlushScheduler.class.getName());
+
+    /*
+     * Flush when there have been no changes during last period.
+     * Continuous drawing can't postpone flush for more than MAX_DELAY periods.
+     */
+    private static class DebounceScheduler extends FlushScheduler {
+        DebounceScheduler(BDRootWindow window) {
+            super(window);
+        }
+
+        protected void schedule() {
+            changeCount++;
+            if (timerTask == null && timer != null) {
+                timerTask = new RefreshTimerTask();
+                timer.schedule(timerTask, PERIOD, PERIOD);
+            }
+        }
+
+        void flushed() {
+            super.flushed();
+            if (timerTask != null) {
+                timerTask.cancel();
+                timerTask = null;
+            }
+            changeCount = 0;
+            delayCount = 0;
+        }
+
+        void stop() {
+            if (timerTask != null) {
+                timerTask.cancel();
+                timerTask = null;
+            }
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+            super.stop();
+        }
+
+        private class RefreshTimerTask extends TimerTask {
+            public void run() {
+                synchronized (window) {
+                    if (timerTask != this) {
+                        return;
+                    }
+                    if (changeCount == lastChangeCount || ++delayCount >= MAX_DELAY) {
+                        flush();
+                    } else {
+                        skippedFrames++;
+                        lastChangeCount = changeCount;
+                    }
+                }
+            }
+
+            private int lastChangeCount = changeCount;
+        }
+
+        private static final int PERIOD = 40;
+        private static final int MAX_DELAY = 5;
+
+        private Timer timer = new Timer();
+        private TimerTask timerTask = null;
+        private int changeCount = 0;
+        private int delayCount = 0;
+    }
+
+    /*
+     * Flush at video frame rate.
+     */
+    private static class VideoRateScheduler extends FlushScheduler implements Runnable {
+        VideoRateScheduler(BDRootWindow window) {
+            super(window);
+            thread = new Thread(this, "BDRootWindow.FlushScheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        protected void schedule() {
+            synchronized (lock) {
+                if (!kick) {
+                    kick = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        void setFrameRate(float fps) {
+            if (fps > 0.0f) {
+                synchronized (lock) {
+                    period = 1000.0 / fps;
+                }
+            }
+        }
+
+        void stop() {
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+            super.stop();
+        }
+
+        public void run() {
+            double next = 0;
+
+            while (true) {
+                synchronized (lock) {
+                    try {
+                        while (running && !kick) {
+                            lock.wait();
+                        }
+                        /* idle: start new frame sequence */
+                        long now = System.currentTimeMillis();
+                        if (next < now - period) {
+                            next = now;
+                        }
+                        while (running && (now = System.currentTimeMillis()) < (long)next) {
+                            lock.wait((long)next - now);
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    kick = false;
+
+                    long late = System.currentTimeMillis() - (long)next;
+                    if (late >= period) {
+                        skippedFrames += (int)(late / period);
+                        next += Math.floor(late / period) * period;
+                    }
+                    next += period;
+                }
+
+                flush();
+            }
+        }
+
+        private final Object lock = new Object();
+        private Thread thread;
+        private boolean running = true;
+        private boolean kick = false;
+        private double period = 1000.0 / 25.0;
+    }
+
+    /*
+     * Flush at frame ticks from the player.
+     * If ticks stop (ex. video is paused), changes are flushed after FALLBACK_DELAY.
+     */
+    private static class HostTickScheduler extends FlushScheduler {
+        HostTickScheduler(BDRootWindow window) {
+            super(window);
+        }
+
+        protected void schedule() {
+            if (timerTask == null && timer != null) {
+                timerTask = new FallbackTimerTask();
+                timer.schedule(timerTask, FALLBACK_DELAY);
+            }
+        }
+
+        void frameTick() {
+            flush();
+        }
+
+        void flushed() {
+            super.flushed();
+            if (timerTask != null) {
+                timerTask.cancel();
+                timerTask = null;
+            }
+        }
+
+        void stop() {
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+            timerTask = null;
+            super.stop();
+        }
+
+        private class FallbackTimerTask extends TimerTask {
+            public void run() {
+                synchronized (window) {
+                    if (timerTask == this) {
+                        skippedFrames++;
+                        flush();
+                    }
+                }
+            }
+        }
+
+        private static final int FALLBACK_DELAY = 100;
+
+        private Timer timer = new Timer();
+        private TimerTask timerTask = null;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+/*
+ * Cache of rendered glyph alpha masks.
+ *
+ * Each font face (font file + size) has its own GlyphCache.
+ * Lookups are done by character code from two-level page table.
+ * All caches share one LRU list and memory budget.
+ */
+
+class GlyphCache {
+
+    static class Glyph {
+        char    c;
+        int     left;     /* offset from pen position to left edge of mask */
+        int     top;      /* offset from baseline to top edge of mask */
+        int     width;
+        int     height;
+        int     advance;
+        byte[]  mask;     /* width * height alpha values */
+
+        /* LRU list */
+        GlyphCache owner;
+        Glyph      prev;
+        Glyph      next;
+
+        int size() {
+            return 48 + (mask != null ? mask.length : 0);
+        }
+    }
+
+    /* max. memory used by all glyph caches */
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private static final Object lock = new Object();
+    private static Glyph head = null;
+    private static Glyph tail = null;
+    private static int   totalBytes = 0;
+
+    private Glyph[][] pages = new Glyph[256][];
+
+    GlyphCache() {
+    }
+
+    Glyph get(char c) {
+        synchronized (lock) {
+            Glyph[] page = pages[c >> 8];
+            if (page == null) {
+                return null;
+            }
+            Glyph g = page[c & 0xff];
+            if (g != null && g != head) {
+                unlink(g);
+                linkFirst(g);
+            }
+            return g;
+        }
+    }
+
+    void put(Glyph g) {
+        synchronized (lock) {
+            Glyph[] page = pages[g.c >> 8];
+            if (page == null) {
+                page = pages[g.c >> 8] = new Glyph[256];
+            }
+            Glyph old = page[g.c & 0xff];
+            if (old != null) {
+                unlink(old);
+                totalBytes -= old.size();
+            }
+            page[g.c & 0xff] = g;
+            g.owner = this;
+            linkFirst(g);
+            totalBytes += g.size();
+
+            while (totalBytes > MAX_BYTES && tail != null && tail != g) {
+                Glyph lru = tail;
+                unlink(lru);
+                totalBytes -= lru.size();
+                lru.owner.pages[lru.c >> 8][lru.c & 0xff] = null;
+                lru.owner = null;
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < pages.length; i++) {
+                Glyph[] page = pages[i];
+                if (page == null) {
+                    continue;
+                }
+                for (int j = 0; j < page.length; j++) {
+                    if (page[j] != null) {
+                        unlink(page[j]);
+                        totalBytes -= page[j].size();
+                        page[j].owner = null;
+                    }
+                }
+                pages[i] = null;
+            }
+        }
+    }
+
+    private static void linkFirst(Glyph g) {
+        g.prev = null;
+        g.next = head;
+        if (head != null) {
+            head.prev = g;
+        }
+        head = g;
+        if (tail == null) {
+            tail = g;
+        }
+    }
+
+    private static void unlink(Glyph g) {
+        if (g.prev != null) {
+            g.prev.next = g.next;
+        } else {
+            head = g.next;
+        }
+        if (g.next != null) {
+            g.next.prev = g.prev;
+        } else {
+            tail = g.prev;
+        }
+        g.prev = null;
+        g.next = null;
+    }
+}
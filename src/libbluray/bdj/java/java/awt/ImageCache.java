@@ -0,0 +1,170 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
+/*
+ * Cache for Toolkit.getImage().
+ *
+ * Memory used by decoded images (width * height * 4 bytes) is
+ * limited. Least recently used images are dropped from the cache
+ * when limit is exceeded.
+ * Images are owned by the xlet that loaded those, and dropped when
+ * the xlet context is released.
+ */
+
+class ImageCache {
+
+    private static class Entry {
+        Object key;
+        BDImage image;
+        BDJXletContext owner;
+        long size;
+    }
+
+    ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /* memory limit from bluray.memory.images (KiB) */
+    static long getDefaultLimit() {
+        long limit = 65536;
+        try {
+            String prop = System.getProperty("bluray.memory.images");
+            if (prop != null) {
+                limit = Long.parseLong(prop);
+            }
+        } catch (Exception e) {
+            logger.error("invalid bluray.memory.images: " + e);
+        }
+        return limit * 1024;
+    }
+
+    synchronized Image get(Object key) {
+        Entry e = (Entry)entries.get(key);
+        if (e == null) {
+            return null;
+        }
+        return e.image;
+    }
+
+    synchronized void put(Object key, BDImage image, BDJXletContext owner) {
+        Entry e = (Entry)entries.get(key);
+        if (e != null) {
+            remove(e);
+        }
+        e = (Entry)images.get(image);
+        if (e != null) {
+            remove(e);
+        }
+
+        e = new Entry();
+        e.key = key;
+        e.image = image;
+        e.owner = owner;
+        e.size = imageSize(image);
+        entries.put(key, e);
+        images.put(image, e);
+        totalBytes += e.size;
+
+        evict();
+    }
+
+    /* image was flushed */
+    synchronized void remove(BDImage image) {
+        Entry e = (Entry)images.get(image);
+        if (e != null) {
+            remove(e);
+        }
+    }
+
+    /* image size is known after decoding has started */
+    synchronized void updateSize(BDImage image) {
+        Entry e = (Entry)images.get(image);
+        if (e != null) {
+            totalBytes -= e.size;
+            e.size = imageSize(image);
+            totalBytes += e.size;
+            evict();
+        }
+    }
+
+    synchronized void removeContext(BDJXletContext owner) {
+        Iterator it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = (Entry)it.next();
+            if (e.owner == owner) {
+                it.remove();
+                images.remove(e.image);
+                totalBytes -= e.size;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        images.clear();
+        totalBytes = 0;
+    }
+
+    private void remove(Entry e) {
+        entries.remove(e.key);
+        images.remove(e.image);
+        totalBytes -= e.size;
+    }
+
+    private void evict() {
+        Iterator it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry e = (Entry)it.next();
+            if (entries.size() <= 1) {
+                break;
+            }
+            it.remove();
+            images.remove(e.image);
+            totalBytes -= e.size;
+            logger.info("dropped " + e.key + " from image cache (" + e.size + " bytes)");
+        }
+    }
+
+    private static long imageSize(BDImage image) {
+        if (image.width <= 0 || image.height <= 0) {
+            return 0;
+        }
+        return (long)image.width * (long)image.height * 4;
+    }
+
+    private final long maxBytes;
+    private long totalBytes = 0;
+
+    /* key -> Entry, in access order */
+    private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+    /* BDImage -> Entry */
+    private Map images = new HashMap();
+
+    private static final Logger logger = Logger.getLogger(ImageCache.class.getName());
+}
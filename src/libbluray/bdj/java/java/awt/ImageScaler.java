@@ -0,0 +1,433 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * ARGB image scaling with fixed-point arithmetic.
+ * Pixels are in internal pixel format (see PixelFormat).
+ *
+ * Scaled images are cached. Cache entries are bound to source image
+ * and to its modification count, and memory used by the cache is limited.
+ */
+
+class ImageScaler {
+
+    /* scaling quality */
+    static final int NEAREST  = 0;
+    static final int BILINEAR = 1;
+    static final int AREA     = 2;   /* box filter when downscaling, bilinear when upscaling */
+
+    /* map Image.SCALE_* hints to scaling quality */
+    static int getQuality(int hints) {
+        if ((hints & (Image.SCALE_SMOOTH | Image.SCALE_AREA_AVERAGING)) != 0) {
+            return AREA;
+        }
+        if ((hints & (Image.SCALE_FAST | Image.SCALE_REPLICATE)) != 0) {
+            return NEAREST;
+        }
+        return BILINEAR;
+    }
+
+    /*
+     * Scale image area (sx, sy, sw, sh) to dw * dh pixels.
+     * Result may be shared, it must not be modified.
+     */
+    static int[] getScaled(BDImageBase image, int sx, int sy, int sw, int sh,
+                           int dw, int dh, int quality) {
+        if (quality == AREA && dw >= sw && dh >= sh) {
+            quality = BILINEAR;
+        }
+
+        int version = image.getDirtyArea().getModCount();
+        Entry e = lookup(image, sx, sy, sw, sh, dw, dh, quality, version);
+        if (e != null) {
+            return e.pixels;
+        }
+
+        int[] dst = new int[dw * dh];
+        int[] src = image.getBdBackBuffer();
+        int stride = image.getBdStride();
+        int offset = image.getBdOffset() + sy * stride + sx;
+        switch (quality) {
+            case NEAREST:
+                scaleNearest(src, offset, stride, sw, sh, dst, dw, dh);
+                break;
+            case AREA:
+                scaleArea(src, offset, stride, sw, sh, dst, dw, dh);
+                break;
+            default:
+                scaleBilinear(src, offset, stride, sw, sh, dst, dw, dh);
+                break;
+        }
+
+        e = new Entry();
+        e.sx = sx;
+        e.sy = sy;
+        e.sw = sw;
+        e.sh = sh;
+        e.dw = dw;
+        e.dh = dh;
+        e.quality = quality;
+        e.version = version;
+        e.pixels = dst;
+        insert(image, e);
+
+        return dst;
+    }
+
+    /* image content was discarded */
+    static void flush(BDImageBase image) {
+        synchronized (lock) {
+            ArrayList list = (ArrayList)cache.remove(image);
+            if (list != null) {
+                for (int i = 0; i < list.size(); i++) {
+                    unlink((Entry)list.get(i));
+                }
+            }
+        }
+    }
+
+    static void clear() {
+        synchronized (lock) {
+            cache.clear();
+            head = tail = null;
+            totalBytes = 0;
+        }
+    }
+
+    /*
+     * Scalers.
+     * Source position of destination pixel center is (x + 0.5) * sw / dw - 0.5 (16.16 fixed point).
+     */
+
+    private static int[] mapPositions(int sn, int dn) {
+        int[] pos = new int[dn];
+        int step  = (int)(((long)sn << 16) / dn);
+        int p     = step / 2 - 32768;
+        for (int i = 0; i < dn; i++, p += step) {
+            pos[i] = p < 0 ? 0 : p;
+        }
+        return pos;
+    }
+
+    private static void scaleNearest(int[] src, int offset, int scansize, int sw, int sh,
+                                     int[] dst, int dw, int dh) {
+        int[] xs = new int[dw];
+        int step = (int)(((long)sw << 16) / dw);
+        for (int x = 0, p = step / 2; x < dw; x++, p += step) {
+            xs[x] = p >> 16;
+        }
+
+        int stepY = (int)(((long)sh << 16) / dh);
+        int d = 0;
+        for (int y = 0, p = stepY / 2; y < dh; y++, p += stepY) {
+            int row = offset + (p >> 16) * scansize;
+            for (int x = 0; x < dw; x++) {
+                dst[d++] = src[row + xs[x]];
+            }
+        }
+    }
+
+    /* 7-bit weights: alpha-weighted sums fit in 31 bits */
+    private static void scaleBilinear(int[] src, int offset, int scansize, int sw, int sh,
+                                      int[] dst, int dw, int dh) {
+        int[] xpos = mapPositions(sw, dw);
+        int[] ypos = mapPositions(sh, dh);
+        int[] x0 = new int[dw];
+        int[] x1 = new int[dw];
+        int[] fx = new int[dw];
+        for (int x = 0; x < dw; x++) {
+            x0[x] = xpos[x] >> 16;
+            x1[x] = Math.min(x0[x] + 1, sw - 1);
+            fx[x] = (xpos[x] >> 9) & 127;
+            if (x0[x] >= sw - 1) {
+                x0[x] = sw - 1;
+                fx[x] = 0;
+            }
+        }
+
+        int d = 0;
+        for (int y = 0; y < dh; y++) {
+            int sy0 = ypos[y] >> 16;
+            int fy  = (ypos[y] >> 9) & 127;
+            if (sy0 >= sh - 1) {
+                sy0 = sh - 1;
+                fy  = 0;
+            }
+            int row0 = offset + sy0 * scansize;
+            int row1 = offset + Math.min(sy0 + 1, sh - 1) * scansize;
+
+            for (int x = 0; x < dw; x++) {
+                int a = src[row0 + x0[x]];
+                int b = src[row0 + x1[x]];
+                int c = src[row1 + x0[x]];
+                int e = src[row1 + x1[x]];
+
+                int wx  = fx[x];
+                int w00 = (128 - wx) * (128 - fy);
+                int w01 = wx * (128 - fy);
+                int w10 = (128 - wx) * fy;
+                int w11 = wx * fy;
+
+                if (PixelFormat.PREMULTIPLIED) {
+                    /* premultiplied: interpolate all channels */
+                    int A = ((a >>> 24) * w00 + (b >>> 24) * w01 +
+                             (c >>> 24) * w10 + (e >>> 24) * w11 + 8192) >> 14;
+                    int R = (((a >> 16) & 255) * w00 + ((b >> 16) & 255) * w01 +
+                             ((c >> 16) & 255) * w10 + ((e >> 16) & 255) * w11 + 8192) >> 14;
+                    int G = (((a >> 8) & 255) * w00 + ((b >> 8) & 255) * w01 +
+                             ((c >> 8) & 255) * w10 + ((e >> 8) & 255) * w11 + 8192) >> 14;
+                    int B = ((a & 255) * w00 + (b & 255) * w01 +
+                             (c & 255) * w10 + (e & 255) * w11 + 8192) >> 14;
+                    dst[d++] = (A << 24) | (R << 16) | (G << 8) | B;
+                    continue;
+                }
+
+                if ((((a ^ b) | (a ^ c) | (a ^ e)) >>> 24) == 0) {
+                    /* same alpha: plain interpolation */
+                    if ((a >>> 24) == 0) {
+                        dst[d++] = 0;
+                        continue;
+                    }
+                    int R = (((a >> 16) & 255) * w00 + ((b >> 16) & 255) * w01 +
+                             ((c >> 16) & 255) * w10 + ((e >> 16) & 255) * w11 + 8192) >> 14;
+                    int G = (((a >> 8) & 255) * w00 + ((b >> 8) & 255) * w01 +
+                             ((c >> 8) & 255) * w10 + ((e >> 8) & 255) * w11 + 8192) >> 14;
+                    int B = ((a & 255) * w00 + (b & 255) * w01 +
+                             (c & 255) * w10 + (e & 255) * w11 + 8192) >> 14;
+                    dst[d++] = (a & 0xff000000) | (R << 16) | (G << 8) | B;
+                    continue;
+                }
+
+                /* weight colors with alpha */
+                w00 *= a >>> 24;
+                w01 *= b >>> 24;
+                w10 *= c >>> 24;
+                w11 *= e >>> 24;
+                int As = w00 + w01 + w10 + w11;
+                if (As == 0) {
+                    dst[d++] = 0;
+                    continue;
+                }
+                int half = As >> 1;
+                int R = (((a >> 16) & 255) * w00 + ((b >> 16) & 255) * w01 +
+                         ((c >> 16) & 255) * w10 + ((e >> 16) & 255) * w11 + half) / As;
+                int G = (((a >> 8) & 255) * w00 + ((b >> 8) & 255) * w01 +
+                         ((c >> 8) & 255) * w10 + ((e >> 8) & 255) * w11 + half) / As;
+                int B = ((a & 255) * w00 + (b & 255) * w01 +
+                         (c & 255) * w10 + (e & 255) * w11 + half) / As;
+                dst[d++] = (((As + 8192) >> 14) << 24) | (R << 16) | (G << 8) | B;
+            }
+        }
+    }
+
+    /* average of all source pixels covered by destination pixel */
+    private static void scaleArea(int[] src, int offset, int scansize, int sw, int sh,
+                                  int[] dst, int dw, int dh) {
+        int[] xs = new int[dw + 1];
+        for (int x = 0; x <= dw; x++) {
+            xs[x] = (int)((long)x * sw / dw);
+        }
+
+        long[] sumA = new long[dw];
+        long[] sumR = new long[dw];
+        long[] sumG = new long[dw];
+        long[] sumB = new long[dw];
+        int[]  n    = new int[dw];
+
+        int d = 0;
+        for (int y = 0; y < dh; y++) {
+            int y0 = (int)((long)y * sh / dh);
+            int y1 = (int)((long)(y + 1) * sh / dh);
+            if (y1 <= y0) {
+                y1 = y0 + 1;
+            }
+
+            for (int x = 0; x < dw; x++) {
+                sumA[x] = sumR[x] = sumG[x] = sumB[x] = 0;
+                n[x] = 0;
+            }
+
+            for (int Y = y0; Y < y1; Y++) {
+                int row = offset + Y * scansize;
+                for (int x = 0; x < dw; x++) {
+                    int x0 = xs[x];
+                    int x1 = Math.max(xs[x + 1], x0 + 1);
+                    long A = 0, R = 0, G = 0, B = 0;
+                    if (PixelFormat.PREMULTIPLIED) {
+                        for (int X = x0; X < x1; X++) {
+                            int p = src[row + X];
+                            A += p >>> 24;
+                            R += (p >> 16) & 255;
+                            G += (p >>  8) & 255;
+                            B +=  p        & 255;
+                        }
+                    } else {
+                        for (int X = x0; X < x1; X++) {
+                            int p  = src[row + X];
+                            int pa = p >>> 24;
+                            A += pa;
+                            R += ((p >> 16) & 255) * pa;
+                            G += ((p >>  8) & 255) * pa;
+                            B += ( p        & 255) * pa;
+                        }
+                    }
+                    sumA[x] += A;
+                    sumR[x] += R;
+                    sumG[x] += G;
+                    sumB[x] += B;
+                    n[x]    += x1 - x0;
+                }
+            }
+
+            for (int x = 0; x < dw; x++) {
+                long A = sumA[x];
+                if (PixelFormat.PREMULTIPLIED) {
+                    long half = n[x] >> 1;
+                    dst[d++] = ((int)((A       + half) / n[x]) << 24) |
+                               ((int)((sumR[x] + half) / n[x]) << 16) |
+                               ((int)((sumG[x] + half) / n[x]) << 8) |
+                                (int)((sumB[x] + half) / n[x]);
+                    continue;
+                }
+                if (A == 0) {
+                    dst[d++] = 0;
+                    continue;
+                }
+                long half = A >> 1;
+                int alpha = (int)((A + (n[x] >> 1)) / n[x]);
+                dst[d++] = (alpha << 24) |
+                    ((int)((sumR[x] + half) / A) << 16) |
+                    ((int)((sumG[x] + half) / A) << 8) |
+                     (int)((sumB[x] + half) / A);
+            }
+        }
+    }
+
+    /*
+     * Cache
+     */
+
+    private static class Entry {
+        int sx, sy, sw, sh, dw, dh, quality;
+        int version;
+        int[] pixels;
+
+        ArrayList owner;   /* list of entries of source image */
+        Entry prev, next;  /* LRU list */
+
+        int size() {
+            return pixels.length * 4;
+        }
+    }
+
+    /* max. memory used by scaled images: 1/4 of image memory */
+    private static final long MAX_BYTES = ImageCache.getDefaultLimit() / 4;
+
+    private static final Object lock = new Object();
+    /* source image -> ArrayList of Entry */
+    private static final Map cache = new WeakHashMap();
+    private static Entry head = null;
+    private static Entry tail = null;
+    private static long totalBytes = 0;
+
+    private static Entry lookup(BDImageBase image, int sx, int sy, int sw, int sh,
+                                int dw, int dh, int quality, int version) {
+        synchronized (lock) {
+            ArrayList list = (ArrayList)cache.get(image);
+            if (list == null) {
+                return null;
+            }
+            for (int i = 0; i < list.size(); i++) {
+                Entry e = (Entry)list.get(i);
+                if (e.sx == sx && e.sy == sy && e.sw == sw && e.sh == sh &&
+                    e.dw == dw && e.dh == dh && e.quality == quality) {
+                    if (e.version != version) {
+                        /* source image has been modified */
+                        list.remove(i);
+                        unlink(e);
+                        return null;
+                    }
+                    if (e != head) {
+                        unlink(e);
+                        linkFirst(e);
+                    }
+                    return e;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static void insert(BDImageBase image, Entry e) {
+        if (e.size() > MAX_BYTES / 2) {
+            return;
+        }
+        synchronized (lock) {
+            ArrayList list = (ArrayList)cache.get(image);
+            if (list == null) {
+                list = new ArrayList();
+                cache.put(image, list);
+            }
+            e.owner = list;
+            list.add(e);
+            linkFirst(e);
+
+            while (totalBytes > MAX_BYTES && tail != null && tail != e) {
+                Entry lru = tail;
+                lru.owner.remove(lru);
+                unlink(lru);
+            }
+        }
+    }
+
+    private static void linkFirst(Entry e) {
+        e.prev = null;
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        }
+        head = e;
+        if (tail == null) {
+            tail = e;
+        }
+        totalBytes += e.size();
+    }
+
+    private static void unlink(Entry e) {
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            head = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            tail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+        totalBytes -= e.size();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import org.videolan.Libbluray;
+import org.videolan.Logger;
+
+/*
+ * Asynchronous overlay upload.
+ *
+ * Dirty areas of window back buffer are copied to front buffer
+ * (with window locked), and uploaded to native overlay from a
+ * separate thread. Drawing to back buffer continues while
+ * previous frame is uploaded.
+ */
+
+class OverlayUploader implements Runnable {
+
+    OverlayUploader(BDRootWindow window) {
+        this.window = window;
+        thread = new Thread(this, "BDRootWindow.OverlayUploader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * Copy areas from back buffer to front buffer and queue those for upload.
+     * Called with window locked.
+     * Returns false if previous frame is still being uploaded. Window is synced again
+     * when upload completes.
+     */
+    synchronized boolean submit(int[] backBuffer, int width, int height, Area[] areas) {
+        if (!running) {
+            return false;
+        }
+        if (busy) {
+            resync = true;
+            return false;
+        }
+
+        if (front == null || front.length < width * height) {
+            front = new int[width * height];
+            copy(backBuffer, 0, front, 0, width * height);
+        }
+        frontWidth = width;
+        frontHeight = height;
+
+        for (int i = 0; i < areas.length; i++) {
+            Area a = areas[i];
+            int w = a.x1 - a.x0 + 1;
+            for (int y = a.y0; y <= a.y1; y++) {
+                int offset = y * width + a.x0;
+                copy(backBuffer, offset, front, offset, w);
+            }
+            pending.add(a.x0, a.y0, a.x1, a.y1);
+        }
+
+        notifyAll();
+        return true;
+    }
+
+    /* overlay is uploaded with straight alpha unless host wants premultiplied pixels */
+    private static void copy(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        if (PixelFormat.UNPREMULTIPLY_OVERLAY) {
+            PixelFormat.toARGB(src, srcOffset, dst, dstOffset, length);
+        } else {
+            System.arraycopy(src, srcOffset, dst, dstOffset, length);
+        }
+    }
+
+    /* wait until all submitted areas have been uploaded */
+    synchronized void waitIdle() {
+        while (running && (busy || !pending.isEmpty())) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+            }
+        }
+        resync = false;
+    }
+
+    synchronized void shutdown() {
+        running = false;
+        front = null;
+        notifyAll();
+    }
+
+    public void run() {
+        while (true) {
+            Area[] areas;
+            int[] buffer;
+            int width, height;
+
+            synchronized (this) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                areas = pending.getAreas();
+                pending.clear();
+                buffer = front;
+                width = frontWidth;
+                height = frontHeight;
+                busy = true;
+            }
+
+            try {
+                for (int i = 0; i < areas.length; i++) {
+                    Area a = areas[i];
+                    Libbluray.updateGraphic(width, height, buffer, a.x0, a.y0, a.x1, a.y1);
+                }
+            } catch (Throwable t) {
+                logger.error("overlay upload failed: " + t);
+            }
+
+            boolean again;
+            synchronized (this) {
+                busy = false;
+                again = resync;
+                resync = false;
+                notifyAll();
+            }
+
+            /* changes were made during upload */
+            if (again) {
+                window.resync();
+            }
+        }
+    }
+
+    private final BDRootWindow window;
+    private final Thread thread;
+
+    private int[] front = null;
+    private int frontWidth;
+    private int frontHeight;
+    private DirtyRegion pending = new DirtyRegion();
+    private boolean busy = false;
+    private boolean resync = false;
+    private boolean running = true;
+
+    private static final Logger logger = Logger.getLogger(OverlayUploader.class.getName());
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+
+/*
+ * Pixel format of image and window back buffers.
+ *
+ * Buffers hold 32-bit ARGB pixels with either straight or premultiplied
+ * alpha (system property bluray.graphics.premultiplied, default true).
+ * With premultiplied alpha SRC_OVER blending is a multiply-add.
+ * Pixels are converted only when entering or leaving the buffers
+ * (getRGB/setRGB, image decoding, overlay upload).
+ *
+ * Overlay is uploaded with straight alpha unless the host composites
+ * premultiplied pixels (system property bluray.overlay.premultiplied).
+ */
+
+class PixelFormat {
+
+    static final boolean PREMULTIPLIED = getBoolean("bluray.graphics.premultiplied", true);
+
+    /* convert window buffer to straight alpha before upload */
+    static final boolean UNPREMULTIPLY_OVERLAY =
+        PREMULTIPLIED && !getBoolean("bluray.overlay.premultiplied", false);
+
+    /* color model of internal buffers */
+    static ColorModel getColorModel() {
+        return new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                32, 0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000, PREMULTIPLIED,
+                DataBuffer.TYPE_INT);
+    }
+
+    /* straight ARGB -> internal format */
+    static int fromARGB(int argb) {
+        return PREMULTIPLIED ? premultiply(argb) : argb;
+    }
+
+    /* internal format -> straight ARGB */
+    static int toARGB(int pixel) {
+        return PREMULTIPLIED ? unpremultiply(pixel) : pixel;
+    }
+
+    static void fromARGB(int[] buf, int offset, int length) {
+        if (PREMULTIPLIED) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                buf[i] = premultiply(buf[i]);
+            }
+        }
+    }
+
+    static void toARGB(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        if (!PREMULTIPLIED) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = unpremultiply(src[srcOffset + i]);
+        }
+    }
+
+    /* multiply all four 8-bit channels with a / 255 (rounded) */
+    static int mul(int p, int a) {
+        int rb = (p & 0x00ff00ff) * a + 0x00800080;
+        rb = ((rb + ((rb >>> 8) & 0x00ff00ff)) >>> 8) & 0x00ff00ff;
+        int ag = ((p >>> 8) & 0x00ff00ff) * a + 0x00800080;
+        ag = (ag + ((ag >>> 8) & 0x00ff00ff)) & 0xff00ff00;
+        return ag | rb;
+    }
+
+    static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 255) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        return (a << 24) | (mul(argb, a) & 0x00ffffff);
+    }
+
+    static int unpremultiply(int pixel) {
+        int a = pixel >>> 24;
+        if (a == 255 || a == 0) {
+            return pixel;
+        }
+        int inv = INV[a];
+        int R = Math.min(255, (((pixel >> 16) & 255) * inv + 0x8000) >> 16);
+        int G = Math.min(255, (((pixel >>  8) & 255) * inv + 0x8000) >> 16);
+        int B = Math.min(255, (( pixel        & 255) * inv + 0x8000) >> 16);
+        return (a << 24) | (R << 16) | (G << 8) | B;
+    }
+
+    /* 255 / a in 16.16 fixed point */
+    private static final int[] INV = new int[256];
+    static {
+        for (int a = 1; a < 256; a++) {
+            INV[a] = ((255 << 16) + a / 2) / a;
+        }
+    }
+
+    private static boolean getBoolean(String name, boolean def) {
+        try {
+            String prop = System.getProperty(name);
+            if (prop != null) {
+                return "true".equals(prop);
+            }
+        } catch (Exception e) {
+        }
+        return def;
+    }
+}
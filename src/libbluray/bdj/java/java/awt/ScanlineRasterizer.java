@@ -0,0 +1,302 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.util.Arrays;
+
+/*
+ * Path builder and active edge table scanline rasterizer.
+ *
+ * Path vertices and edges are stored in 16.16 fixed point primitive
+ * arrays. Pixel is filled when its center is inside the path.
+ * Arrays are re-used, so filling does not allocate memory once the
+ * arrays have grown large enough.
+ */
+
+class ScanlineRasterizer {
+
+    /* fill rules */
+    static final int WIND_EVEN_ODD = 0;
+    static final int WIND_NON_ZERO = 1;
+
+    /* coordinate limit (pixels). Keeps fixed point arithmetic from overflowing. */
+    private static final double MAX_COORD = 1 << 24;
+
+    /* path vertices */
+    private long[] px = new long[64];
+    private long[] py = new long[64];
+    private int count = 0;
+    private int subpathStart = 0;
+
+    /* edges */
+    private int[]  eY0  = new int[64];   /* first scanline */
+    private int[]  eY1  = new int[64];   /* last scanline + 1 */
+    private int[]  eDir = new int[64];   /* winding direction */
+    private long[] eX   = new long[64];  /* x at pixel center of current scanline */
+    private long[] eDX  = new long[64];  /* x step per scanline */
+    private int edgeCount = 0;
+
+    private long[] sorted = new long[64];
+    private int[]  active = new int[64];
+
+    void reset() {
+        count = 0;
+        subpathStart = 0;
+        edgeCount = 0;
+    }
+
+    /*
+     * path
+     */
+
+    void moveTo(double x, double y) {
+        closePath();
+        addPoint(x, y);
+    }
+
+    void lineTo(double x, double y) {
+        addPoint(x, y);
+    }
+
+    /*
+     * Elliptical arc. Angles are in degrees, 0 is at 3 o'clock and positive
+     * angles are counter-clockwise. First point of arc is joined to current
+     * point with a line.
+     */
+    void arc(double cx, double cy, double rx, double ry, double start, double extent) {
+        int segments = (int)Math.ceil(Math.abs(extent) / 360.0 * getSegments(rx, ry));
+        if (segments < 1) {
+            segments = 1;
+        }
+        double a0 = Math.toRadians(start);
+        double da = Math.toRadians(extent) / segments;
+        for (int i = 0; i <= segments; i++) {
+            double a = a0 + da * i;
+            addPoint(cx + rx * Math.cos(a), cy - ry * Math.sin(a));
+        }
+    }
+
+    /* add edges of current subpath */
+    void closePath() {
+        int n = count - subpathStart;
+        if (n > 1) {
+            for (int i = subpathStart; i < count - 1; i++) {
+                addEdge(px[i], py[i], px[i + 1], py[i + 1]);
+            }
+            addEdge(px[count - 1], py[count - 1], px[subpathStart], py[subpathStart]);
+        }
+        subpathStart = count;
+    }
+
+    /* vertices rounded to nearest pixel */
+    int getPointCount() {
+        return count;
+    }
+
+    int getX(int i) {
+        return (int)((px[i] + 0x8000) >> 16);
+    }
+
+    int getY(int i) {
+        return (int)((py[i] + 0x8000) >> 16);
+    }
+
+    /*
+     * Fill path. Clip rectangle is in device coordinates, x1 and y1 are exclusive.
+     */
+    void fill(BDGraphicsBase g, int rule, int rgb, int clipX0, int clipY0, int clipX1, int clipY1) {
+        closePath();
+        if (edgeCount < 2) {
+            return;
+        }
+
+        /* sort edges by first scanline */
+        if (sorted.length < edgeCount) {
+            sorted = new long[edgeCount * 2];
+            active = new int[edgeCount * 2];
+        }
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < edgeCount; i++) {
+            sorted[i] = ((long)eY0[i] << 32) | i;
+            minY = Math.min(minY, eY0[i]);
+            maxY = Math.max(maxY, eY1[i]);
+        }
+        Arrays.sort(sorted, 0, edgeCount);
+
+        int y0 = Math.max(minY, clipY0);
+        int y1 = Math.min(maxY, clipY1);
+        int next = 0;
+        int nActive = 0;
+
+        for (int Y = y0; Y < y1; Y++) {
+
+            /* drop finished edges */
+            int n = 0;
+            for (int i = 0; i < nActive; i++) {
+                if (eY1[active[i]] > Y) {
+                    active[n++] = active[i];
+                }
+            }
+            nActive = n;
+
+            /* add new edges. Edges starting above clip area are advanced to this scanline. */
+            while (next < edgeCount) {
+                int e = (int)sorted[next];
+                if (eY0[e] > Y) {
+                    break;
+                }
+                next++;
+                if (eY1[e] <= Y) {
+                    continue;
+                }
+                if (eY0[e] < Y) {
+                    eX[e] += eDX[e] * (Y - eY0[e]);
+                }
+                active[nActive++] = e;
+            }
+
+            if (nActive == 0) {
+                if (next >= edgeCount) {
+                    break;
+                }
+                /* skip empty scanlines */
+                Y = eY0[(int)sorted[next]] - 1;
+                continue;
+            }
+
+            /* sort active edges by x. Order changes rarely between scanlines. */
+            for (int i = 1; i < nActive; i++) {
+                int  e = active[i];
+                long x = eX[e];
+                int  j = i - 1;
+                while (j >= 0 && eX[active[j]] > x) {
+                    active[j + 1] = active[j];
+                    j--;
+                }
+                active[j + 1] = e;
+            }
+
+            /* emit spans */
+            int  winding = 0;
+            long left = 0;
+            for (int i = 0; i < nActive; i++) {
+                int e = active[i];
+                boolean wasInside = rule == WIND_EVEN_ODD ? (winding & 1) != 0 : winding != 0;
+                winding += eDir[e];
+                boolean inside = rule == WIND_EVEN_ODD ? (winding & 1) != 0 : winding != 0;
+                if (inside && !wasInside) {
+                    left = eX[e];
+                } else if (wasInside && !inside) {
+                    long x0 = Math.max((left + 0x7fff) >> 16, clipX0);
+                    long x1 = Math.min((eX[e] + 0x7fff) >> 16, clipX1);
+                    if (x1 > x0) {
+                        g.drawSpanN((int)x0, Y, (int)(x1 - x0), rgb);
+                    }
+                }
+            }
+
+            for (int i = 0; i < nActive; i++) {
+                int e = active[i];
+                eX[e] += eDX[e];
+            }
+        }
+    }
+
+    /*
+     *
+     */
+
+    /* number of line segments used for full ellipse */
+    private static int getSegments(double rx, double ry) {
+        int n = (int)((Math.abs(rx) + Math.abs(ry)) * 2);
+        return Math.max(16, Math.min(1024, n));
+    }
+
+    private static long toFixed(double v) {
+        if (v > MAX_COORD) v = MAX_COORD;
+        if (v < -MAX_COORD) v = -MAX_COORD;
+        return (long)Math.floor(v * 65536.0 + 0.5);
+    }
+
+    private void addPoint(double x, double y) {
+        if (count >= px.length) {
+            long[] tx = new long[px.length * 2];
+            long[] ty = new long[py.length * 2];
+            System.arraycopy(px, 0, tx, 0, count);
+            System.arraycopy(py, 0, ty, 0, count);
+            px = tx;
+            py = ty;
+        }
+        px[count] = toFixed(x);
+        py[count] = toFixed(y);
+        count++;
+    }
+
+    private void addEdge(long x0, long y0, long x1, long y1) {
+        int dir = 1;
+        if (y1 < y0) {
+            long t;
+            t = x0; x0 = x1; x1 = t;
+            t = y0; y0 = y1; y1 = t;
+            dir = -1;
+        }
+
+        /* scanlines with pixel center inside edge y range */
+        int Y0 = (int)((y0 + 0x7fff) >> 16);
+        int Y1 = (int)((y1 + 0x7fff) >> 16);
+        if (Y1 <= Y0) {
+            return;
+        }
+
+        if (edgeCount >= eY0.length) {
+            growEdges();
+        }
+
+        double slope = (double)(x1 - x0) / (double)(y1 - y0);
+        double yc    = ((long)Y0 << 16) + 0x8000;
+
+        eY0[edgeCount]  = Y0;
+        eY1[edgeCount]  = Y1;
+        eDir[edgeCount] = dir;
+        eX[edgeCount]   = x0 + (long)Math.floor((yc - y0) * slope + 0.5);
+        eDX[edgeCount]  = (long)Math.floor(slope * 65536.0 + 0.5);
+        edgeCount++;
+    }
+
+    private void growEdges() {
+        int size = eY0.length * 2;
+        int[]  t0 = new int[size];
+        int[]  t1 = new int[size];
+        int[]  t2 = new int[size];
+        long[] t3 = new long[size];
+        long[] t4 = new long[size];
+        System.arraycopy(eY0,  0, t0, 0, edgeCount);
+        System.arraycopy(eY1,  0, t1, 0, edgeCount);
+        System.arraycopy(eDir, 0, t2, 0, edgeCount);
+        System.arraycopy(eX,   0, t3, 0, edgeCount);
+        System.arraycopy(eDX,  0, t4, 0, edgeCount);
+        eY0  = t0;
+        eY1  = t1;
+        eDir = t2;
+        eX   = t3;
+        eDX  = t4;
+    }
+}
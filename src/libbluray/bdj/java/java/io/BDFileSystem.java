@@ -22,6 +22,11 @@
  * - replace getBooleanAttributes() for relative paths.
  *   Pretend files exist, if those are in xlet home directory (inside .jar).
  *   No other relative paths are allowed.
+ * - serve files inside mounted JAR files from JAR index
+ *   (see org.videolan.MountManager).
+ *   Only FileInputStream can read files that have not been extracted.
+ *   Other APIs (RandomAccessFile, ZipFile, native code) need a real file:
+ *   files are extracted when DSMCCObject is loaded or its URL is requested.
  */
 
 package java.io;
@@ -35,6 +40,7 @@ import java.net.URL;
 
 import org.videolan.BDJXletContext;
 import org.videolan.Logger;
+import org.videolan.MountManager;
 
 public abstract class BDFileSystem extends FileSystem {
 
@@ -113,6 +119,12 @@ public abstract class BDFileSystem extends FileSystem {
 
     public int getBooleanAttributes(File f) {
         if (f.isAbsolute()) {
+            switch (MountManager.getAttributes(f.getPath())) {
+                case MountManager.FILE:
+                    return FileSystem.BA_EXISTS | FileSystem.BA_REGULAR;
+                case MountManager.DIRECTORY:
+                    return FileSystem.BA_EXISTS | FileSystem.BA_DIRECTORY;
+            }
             return fs.getBooleanAttributes(f);
         }
 
@@ -132,11 +144,28 @@ public abstract class BDFileSystem extends FileSystem {
       SE: public abstract boolean checkAccess(File f, int access);
     */
 
+    /* files in mounted JAR can be read */
+    protected boolean isMountedFile(File f) {
+        return f.isAbsolute() && MountManager.getAttributes(f.getPath()) != MountManager.NOT_FOUND;
+    }
+
     public long getLastModifiedTime(File f) {
+        if (f.isAbsolute()) {
+            long time = MountManager.getLastModifiedTime(f.getPath());
+            if (time >= 0) {
+                return time;
+            }
+        }
         return fs.getLastModifiedTime(f);
     }
 
     public long getLength(File f) {
+        if (f.isAbsolute()) {
+            long length = MountManager.getLength(f.getPath());
+            if (length >= 0) {
+                return length;
+            }
+        }
         return fs.getLength(f);
     }
 
@@ -206,6 +235,12 @@ public abstract class BDFileSystem extends FileSystem {
     }
 
     public String[] list(File f) {
+        if (f.isAbsolute()) {
+            String[] files = MountManager.list(f.getPath());
+            if (files != null) {
+                return files;
+            }
+        }
         return fs.list(f);
     }
 
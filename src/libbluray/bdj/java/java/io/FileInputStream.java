@@ -23,6 +23,7 @@ import java.net.URL;
 
 import org.videolan.BDJXletContext;
 import org.videolan.Logger;
+import org.videolan.MountManager;
 
 public class FileInputStream extends InputStream
 {
@@ -50,7 +51,7 @@ public class FileInputStream extends InputStream
         fd.incrementAndGetUseCount();
 
         if (file.isAbsolute()) {
-            open(name);
+            openFile(name);
         } else {
             /* relative paths are problematic ... */
             /* Those should be mapped to xlet home directory, which is inside .jar file. */
@@ -77,6 +78,18 @@ public class FileInputStream extends InputStream
         available = 1024;
     }
 
+    private void openFile(String name) throws FileNotFoundException {
+        /* file inside mounted JAR ? */
+        try {
+            fd.slave = MountManager.openStream(name);
+        } catch (IOException e) {
+            throw new FileNotFoundException(name);
+        }
+        if (fd.slave == null) {
+            open(name);
+        }
+    }
+
     private void openResource(String name) throws FileNotFoundException {
         if (logger == null) {
             logger = Logger.getLogger(FileInputStream.class.getName());
@@ -25,6 +25,8 @@ import java.awt.Graphics;
 
 import org.videolan.BDJXletContext;
 import org.videolan.Logger;
+import org.videolan.VideoClock;
+import org.videolan.media.content.PlayerManager;
 
 public abstract class FrameAccurateAnimation extends Component {
 
@@ -78,15 +80,19 @@ public abstract class FrameAccurateAnimation extends Component {
 
     public long getCompletedFrameCount()
     {
-        logger.unimplemented("getCompletedFrameCount");
-        return 0;
+        synchronized (frameLock) {
+            return completedFrames;
+        }
     }
 
+    /* rate of background video. if none, default rate. */
     public float getFrameRate()
     {
-        logger.unimplemented("getFrameRate");
-        // TODO: rate of background video. if none, defaultRate.
-        return getDefaultFrameRate();
+        float rate = VideoClock.getInstance().getFrameRate();
+        if (rate <= 0.0f) {
+            return getDefaultFrameRate();
+        }
+        return rate;
     }
 
     public Graphics getGraphics()
@@ -123,8 +129,11 @@ public abstract class FrameAccurateAnimation extends Component {
     public synchronized void resetStartStopTime(
             FrameAccurateAnimationTimer newTimer)
     {
-        params.faaTimer = new FrameAccurateAnimationTimer(newTimer);
-        logger.unimplemented("resetStartStopTime");
+        if (newTimer == null) {
+            params.faaTimer = null;
+        } else {
+            params.faaTimer = new FrameAccurateAnimationTimer(newTimer);
+        }
     }
 
     public void setBounds(int x, int y, int width, int height)
@@ -161,12 +170,9 @@ public abstract class FrameAccurateAnimation extends Component {
     {
         if (!running) {
             running = true;
-            // TODO: compare timer against video
-
-            if (params.faaTimer != null) {
-                logger.unimplemented("start(faaTimer)");
+            synchronized (frameLock) {
+                completedFrames = 0;
             }
-
             startImpl();
         }
     }
@@ -179,6 +185,34 @@ public abstract class FrameAccurateAnimation extends Component {
         }
     }
 
+    /* called by animation when video frames have been completed */
+    protected void addCompletedFrames(long frames)
+    {
+        synchronized (frameLock) {
+            completedFrames += frames;
+        }
+    }
+
+    /*
+     * Check media time against start and stop times.
+     * Returns -1 before start time, 1 after stop time and 0 otherwise.
+     */
+    protected int checkStartStopTime()
+    {
+        FrameAccurateAnimationTimer timer = params.faaTimer;
+        if (timer == null) {
+            return 0;
+        }
+        long now = PlayerManager.getInstance().getPlaylistMediaNanoseconds();
+        if (now < 0 || now < timer.getStartTime().getNanoseconds()) {
+            return -1;
+        }
+        if (now >= timer.getStopTime().getNanoseconds()) {
+            return 1;
+        }
+        return 0;
+    }
+
     public String toString()
     {
         return "FrameAccurateAnimation";
@@ -187,6 +221,8 @@ public abstract class FrameAccurateAnimation extends Component {
     private BDJXletContext context;
     protected boolean running;
     protected AnimationParameters params;
+    private long completedFrames = 0;
+    private Object frameLock = new Object();
 
     public static final float FRAME_RATE_23_976 = 23.976F;
     public static final float FRAME_RATE_24 = 24.0F;
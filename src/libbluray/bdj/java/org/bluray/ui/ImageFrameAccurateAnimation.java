@@ -20,20 +20,23 @@
 
 package org.bluray.ui;
 
+import java.awt.AlphaComposite;
+import java.awt.BDImageAtlas;
+import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
-import java.awt.Toolkit;
+import java.awt.Rectangle;
+import java.awt.Window;
 import java.awt.image.ImageObserver;
 
 import java.lang.InterruptedException;
-import java.lang.Thread;
 
-import java.awt.BDWindowGraphics;
-
-import org.videolan.GUIManager;
+import org.videolan.AnimationScheduler;
 import org.videolan.Logger;
+import org.videolan.VideoClock;
 
 public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
     implements ImageObserver/*, java.awt.MenuContainer*/ {
@@ -81,6 +84,7 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
         this.images = ((Image[])images.clone());
         this.size = ((Dimension)size.clone());
         this.playmode = playmode;
+        this.repeatLeft = getRepeatCount(0);
     }
 
     public AnimationParameters getAnimationParameters()
@@ -122,9 +126,10 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
             mt.removeImage(images[i], i);
         }
 
-        if (params.scaleFactor != 1) {
-            // TODO: scale if needed
-            logger.unimplemented("image_scaling");
+        /* scale, convert and trim all frames once. Frames are drawn directly if atlas does not fit to memory. */
+        atlas = BDImageAtlas.create(images, params.scaleFactor);
+        if (atlas == null) {
+            logger.info("frame atlas not created, drawing frames directly");
         }
 
         prepared = true;
@@ -141,7 +146,10 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
     {
         if (position < 0 || position >= images.length)
             throw new IllegalArgumentException();
-        this.position = position;
+        synchronized (sequenceLock) {
+            this.position = position;
+            this.repeatLeft = getRepeatCount(position);
+        }
     }
 
 
@@ -150,7 +158,10 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
         stopImpl();
 
         images = null;
-        scaledImages = null;
+        if (atlas != null) {
+            atlas.dispose();
+            atlas = null;
+        }
     }
 
     protected void startImpl()
@@ -159,98 +170,214 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
             prepareImages();
         }
 
-        if (animation == null) {
-            animation = new AnimationThread(this);
+        /* previous animation may have ended by itself (PLAY_ONCE or stop time) */
+        if (animation != null) {
+            AnimationScheduler.getInstance().remove(animation);
         }
+        animation = new AnimationClient(this);
+        AnimationScheduler.getInstance().add(animation, params.threadPriority);
     }
 
     protected void stopImpl()
     {
         if (animation != null) {
-            animation.stop();
+            AnimationScheduler.getInstance().remove(animation);
             animation = null;
         }
     }
 
     public void paint(Graphics g)
     {
+        int position = this.position;
+        BDImageAtlas atlas = this.atlas;
+        if (atlas != null) {
+            if (!atlas.drawFrame(g, position, 0, 0)) {
+                logger.warning("paint(" + position + ") failed");
+            }
+            return;
+        }
+        Image[] images = this.images;
         if (images != null && images[position] != null) {
-            if (!g.drawImage(images[position], super.getBounds().x, super.getBounds().y, this)) {
+            Image image = images[position];
+            int scale = params.scaleFactor;
+            if (!g.drawImage(image, 0, 0, image.getWidth(null) * scale, image.getHeight(null) * scale, this)) {
                 logger.warning("paint(" + position + ") failed");
             }
         }
     }
 
-    private class AnimationThread implements Runnable {
-        private Thread thread = null;
-        private boolean ready = false;
-        private ImageFrameAccurateAnimation faa;
-
-        AnimationThread(ImageFrameAccurateAnimation faa) {
-            this.faa = faa;
-
-            // TODO: use params.threadPriority
-
-            thread = new Thread(this);
-            thread.start();
-        }
+    /*
+     * paint current frame to root window. Only animation area is changed.
+     * Frame bounding box is copied from atlas, rest of the area is cleared.
+     */
+    private void paintFrame(Graphics g)
+    {
+        Rectangle r = getWindowBounds();
+        Graphics cg = g.create(r.x, r.y, r.width, r.height);
+        try {
+            BDImageAtlas atlas = this.atlas;
+            if (atlas == null || !(cg instanceof Graphics2D)) {
+                cg.clearRect(0, 0, r.width, r.height);
+                paint(cg);
+                return;
+            }
 
-        public void stop() {
-            ready = true;
-            if (thread != null) {
-                try {
-                    thread.join();
-                } catch (java.lang.InterruptedException e) {
-                }
-                thread = null;
+            int position = this.position;
+            Rectangle b = atlas.getBounds(position);
+            if (b.isEmpty()) {
+                cg.clearRect(0, 0, r.width, r.height);
+                return;
             }
-            faa = null;
+            cg.clearRect(0, 0, r.width, b.y);
+            cg.clearRect(0, b.y + b.height, r.width, r.height - b.y - b.height);
+            cg.clearRect(0, b.y, b.x, b.height);
+            cg.clearRect(b.x + b.width, b.y, r.width - b.x - b.width, b.height);
+
+            ((Graphics2D)cg).setComposite(AlphaComposite.Src);
+            atlas.drawFrame(cg, position, 0, 0);
+        } finally {
+            cg.dispose();
         }
+    }
 
-        public void run() {
-            int increment = 1;
+    private Rectangle getWindowBounds()
+    {
+        Rectangle r = getBounds();
+        if (r.width <= 0 || r.height <= 0) {
+            r.width = size.width;
+            r.height = size.height;
+        }
+        for (Container c = getParent(); c != null && !(c instanceof Window); c = c.getParent()) {
+            r.x += c.getX();
+            r.y += c.getY();
+        }
+        return r;
+    }
 
-            while (!ready) {
+    private int getRepeatCount(int index)
+    {
+        int[] repeatCount = params.repeatCount;
+        if (repeatCount == null || index >= repeatCount.length) {
+            return 0;
+        }
+        return repeatCount[index];
+    }
 
-                // paint image
-                Graphics g = new BDWindowGraphics(GUIManager.getInstance());
-                faa.paint(g);
-                g.dispose();
+    /* number of video frames in one full animation cycle */
+    private long getCycleFrames()
+    {
+        long frames = 0;
+        for (int i = 0; i < images.length; i++) {
+            frames += 1 + getRepeatCount(i);
+        }
+        if (playmode == PLAY_ALTERNATING && images.length > 1) {
+            frames = 2 * frames - (1 + getRepeatCount(0)) - (1 + getRepeatCount(images.length - 1));
+        }
+        return frames;
+    }
 
-                // sleep before next image
-                int count = 1;
-                if (faa.params.repeatCount != null && faa.params.repeatCount.length < position) {
-                    count += faa.params.repeatCount[faa.position];
+    /*
+     * Advance animation by video frames.
+     * Each image is shown for (1 + repeat count) frames.
+     * Returns false when PLAY_ONCE animation has ended.
+     */
+    private boolean advance(long frames)
+    {
+        synchronized (sequenceLock) {
+            if (playmode != PLAY_ONCE) {
+                long cycle = getCycleFrames();
+                if (cycle > 0 && frames > cycle) {
+                    frames = frames % cycle;
                 }
-                for (; !ready && count > 0; count--) {
-                    try {
-                        Thread.sleep(40);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
+            }
+
+            for (; frames > 0; frames--) {
+                if (repeatLeft > 0) {
+                    repeatLeft--;
+                    continue;
                 }
 
-                // next image index
-                int position = faa.position + increment;
-                if (position >= faa.images.length) {
-                    if (faa.playmode == PLAY_REPEATING) {
-                        position = 0;
+                int next = position + increment;
+                if (next >= images.length) {
+                    if (playmode == PLAY_REPEATING) {
+                        next = 0;
                     } else if (playmode == PLAY_ALTERNATING) {
                         increment = -1;
-                        position = faa.images.length - 2;
-                    } else if (playmode == PLAY_ONCE) {
-                        ready = true;
-                        break;
+                        next = Math.max(0, images.length - 2);
+                    } else {
+                        return false;
                     }
                 }
-                if (position < 0) {
-                    position = 1;
+                if (next < 0) {
                     increment = 1;
+                    next = Math.min(1, images.length - 1);
+                }
+                position = next;
+                repeatLeft = getRepeatCount(next);
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Animation is driven by video clock (shared AnimationScheduler).
+     * Animation frame is derived from clock time elapsed since start, so
+     * timing errors do not accumulate. If frames are late, animation skips
+     * to the frame that should be visible.
+     */
+    private static class AnimationClient implements AnimationScheduler.Client {
+        private ImageFrameAccurateAnimation faa;
+        private VideoClock clock = VideoClock.getInstance();
+        private long lastTime = -1;
+        private long elapsed = 0;      /* clock ticks animated */
+        private long frame = -1;       /* video frames completed */
+        private boolean dirty = false;
+
+        AnimationClient(ImageFrameAccurateAnimation faa) {
+            this.faa = faa;
+        }
+
+        public long advance(long now) {
+            float fps = faa.getFrameRate();
+            long period = (long)(VideoClock.TICKS_PER_SECOND / fps);
+
+            int timer = faa.checkStartStopTime();
+            if (timer > 0) {
+                faa.running = false;
+                return -1;
+            }
+
+            long delta = (lastTime < 0) ? 0 : now - lastTime;
+            lastTime = now;
+            if (timer < 0 || (faa.params.lockedToVideo && !clock.isPlaying())) {
+                delta = 0;
+            }
+            elapsed += delta;
+
+            long target = (long)(elapsed * (double)fps / VideoClock.TICKS_PER_SECOND);
+            if (timer == 0 && target > frame) {
+                if (frame >= 0) {
+                    faa.addCompletedFrames(target - frame);
+                    if (!faa.advance(target - frame)) {
+                        faa.running = false;
+                        return -1;
+                    }
                 }
-                faa.position = position;
+                frame = target;
+                dirty = true;
             }
 
-            faa.running = false;
+            /* next video frame */
+            return now + period / 2;
+        }
+
+        public boolean paint(Graphics g) {
+            if (!dirty) {
+                return false;
+            }
+            dirty = false;
+            faa.paintFrame(g);
+            return true;
         }
     }
 
@@ -261,11 +388,14 @@ public class ImageFrameAccurateAnimation extends FrameAccurateAnimation
 
     private int playmode;
     private int position = 0;
+    private int increment = 1;
+    private int repeatLeft = 0;
+    private Object sequenceLock = new Object();
     private Image[] images = null;
-    private Image[] scaledImages = null;
+    private BDImageAtlas atlas = null;
     private boolean prepared = false;
     private Dimension size = null;
-    private AnimationThread animation = null;
+    private AnimationClient animation = null;
 
     private static final long serialVersionUID = 2691302238670178111L;
 
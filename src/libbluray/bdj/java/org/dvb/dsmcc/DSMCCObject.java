@@ -26,6 +26,7 @@ import java.net.URL;
 import java.security.cert.X509Certificate;
 
 import org.videolan.Logger;
+import org.videolan.MountManager;
 
 public class DSMCCObject extends File {
     public DSMCCObject(String path)
@@ -72,7 +73,10 @@ public class DSMCCObject extends File {
     {
         if (!super.exists())
             throw new InvalidPathNameException();
-        
+
+        /* loaded file can be opened with any API (RandomAccessFile, ZipFile, ...) */
+        MountManager.extract(super.getAbsolutePath());
+
         this.loaded = true;
     }
 
@@ -115,6 +119,9 @@ public class DSMCCObject extends File {
 
     public URL getURL()
     {
+        /* URL may be passed anywhere, file must exist in file system */
+        MountManager.extract(super.getAbsolutePath());
+
         String url = "file://" + super.getAbsolutePath();
         try {
             return new URL(url);
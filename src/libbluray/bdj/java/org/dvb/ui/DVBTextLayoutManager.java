@@ -19,130 +19,257 @@
 
 package org.dvb.ui;
 
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Insets;
+import java.util.LinkedList;
 
 import org.havi.ui.HVisible;
+import org.videolan.Logger;
+import org.videolan.TextLayoutCache;
+import org.videolan.TextLayoutCache.Layout;
 
 public class DVBTextLayoutManager implements org.havi.ui.HTextLayoutManager {
 
     public void render(String markedUpString, java.awt.Graphics g, HVisible v,
             java.awt.Insets insets)
     {
-        throw new Error("Not implemented");
+        if (markedUpString == null)
+            return;
+
+        Font font = v.getFont();
+        if (font == null)
+            return;
+        g.setFont(font);
+        FontMetrics fontMetrics = g.getFontMetrics();
+
+        Insets own = getInsets();
+        int left   = own.left   + (insets != null ? insets.left   : 0);
+        int right  = own.right  + (insets != null ? insets.right  : 0);
+        int top    = own.top    + (insets != null ? insets.top    : 0);
+        int bottom = own.bottom + (insets != null ? insets.bottom : 0);
+        int width  = v.getWidth() - left - right;
+        int height = v.getHeight() - top - bottom;
+
+        if (lineOrientation != LINE_ORIENTATION_HORIZONTAL && !orientationWarned) {
+            logger.unimplemented("vertical line orientation");
+            orientationWarned = true;
+        }
+
+        Layout layout;
+        synchronized (this) {
+            layout = TextLayoutCache.getLayout(markedUpString, font, fontMetrics,
+                                               wrap ? Math.max(0, width) : TextLayoutCache.NO_WRAP,
+                                               lineSpace, letterSpace, horizontalTabSpace);
+        }
+
+        boolean fromRight  = startCorner == START_CORNER_UPPER_RIGHT || startCorner == START_CORNER_LOWER_RIGHT;
+        boolean fromBottom = startCorner == START_CORNER_LOWER_LEFT  || startCorner == START_CORNER_LOWER_RIGHT;
+
+        int textHeight = layout.getHeight();
+        int y0;
+        switch (verticalAlign) {
+            case VERTICAL_END_ALIGN:
+                y0 = fromBottom ? top : top + height - textHeight;
+                break;
+            case VERTICAL_CENTER:
+                y0 = top + (height - textHeight) / 2;
+                break;
+            case VERTICAL_START_ALIGN:
+            default:
+                y0 = fromBottom ? top + height - textHeight : top;
+                break;
+        }
+
+        int lines = layout.getLineCount();
+        for (int i = 0; i < lines; i++) {
+            int lineWidth = layout.getLineWidth(i);
+            int x;
+            switch (horizontalAlign) {
+                case HORIZONTAL_END_ALIGN:
+                    x = fromRight ? left : left + width - lineWidth;
+                    break;
+                case HORIZONTAL_CENTER:
+                    x = left + (width - lineWidth) / 2;
+                    break;
+                case HORIZONTAL_START_ALIGN:
+                default:
+                    x = fromRight ? left + width - lineWidth : left;
+                    break;
+            }
+
+            /* lines progress away from start corner */
+            int line = fromBottom ? lines - 1 - i : i;
+            layout.drawLine(g, i, x, y0 + layout.getBaseline(line));
+        }
+
+        boolean overflowH = layout.isClipped() || (!wrap && layout.getWidth() > width);
+        boolean overflowV = textHeight > height;
+        if (overflowH || overflowV) {
+            notifyOverflow(markedUpString, v, overflowH, overflowV);
+        }
     }
 
     public DVBTextLayoutManager()
     {
-        throw new Error("Not implemented");
+        this(HORIZONTAL_START_ALIGN, VERTICAL_START_ALIGN, LINE_ORIENTATION_HORIZONTAL,
+             START_CORNER_UPPER_LEFT, true, -1, 0, 56);
     }
 
     public DVBTextLayoutManager(int horizontalAlign, int verticalAlign,
             int lineOrientation, int startCorner, boolean wrap, int linespace,
             int letterspace, int horizontalTabSpace)
     {
-        throw new Error("Not implemented");
+        this.horizontalAlign = horizontalAlign;
+        this.verticalAlign = verticalAlign;
+        this.lineOrientation = lineOrientation;
+        this.startCorner = startCorner;
+        this.wrap = wrap;
+        this.lineSpace = linespace;
+        this.letterSpace = letterspace;
+        this.horizontalTabSpace = horizontalTabSpace;
     }
 
-    public void setHorizontalAlign(int horizontalAlign)
+    public synchronized void setHorizontalAlign(int horizontalAlign)
     {
-        throw new Error("Not implemented");
+        this.horizontalAlign = horizontalAlign;
     }
 
-    public void setVerticalAlign(int verticalAlign)
+    public synchronized void setVerticalAlign(int verticalAlign)
     {
-        throw new Error("Not implemented");
+        this.verticalAlign = verticalAlign;
     }
 
-    public void setLineOrientation(int lineOrientation)
+    public synchronized void setLineOrientation(int lineOrientation)
     {
-        throw new Error("Not implemented");
+        this.lineOrientation = lineOrientation;
     }
 
-    public void setStartCorner(int startCorner)
+    public synchronized void setStartCorner(int startCorner)
     {
-        throw new Error("Not implemented");
+        this.startCorner = startCorner;
     }
 
-    public void setTextWrapping(boolean wrap)
+    public synchronized void setTextWrapping(boolean wrap)
     {
-        throw new Error("Not implemented");
+        this.wrap = wrap;
     }
 
-    public void setLineSpace(int lineSpace)
+    public synchronized void setLineSpace(int lineSpace)
     {
-        throw new Error("Not implemented");
+        this.lineSpace = lineSpace;
     }
 
-    public void setLetterSpace(int letterSpace)
+    public synchronized void setLetterSpace(int letterSpace)
     {
-        throw new Error("Not implemented");
+        this.letterSpace = letterSpace;
     }
 
-    public void setHorizontalTabSpacing(int horizontalTabSpace)
+    public synchronized void setHorizontalTabSpacing(int horizontalTabSpace)
     {
-        throw new Error("Not implemented");
+        this.horizontalTabSpace = horizontalTabSpace;
     }
 
-    public int getHorizontalAlign()
+    public synchronized int getHorizontalAlign()
     {
-        return HORIZONTAL_START_ALIGN;
+        return horizontalAlign;
     }
 
-    public int getVerticalAlign()
+    public synchronized int getVerticalAlign()
     {
-        throw new Error("Not implemented");
+        return verticalAlign;
     }
 
-    public int getLineOrientation()
+    public synchronized int getLineOrientation()
     {
-        throw new Error("Not implemented");
+        return lineOrientation;
     }
 
-    public int getStartCorner()
+    public synchronized int getStartCorner()
     {
-        throw new Error("Not implemented");
+        return startCorner;
     }
 
-    public boolean getTextWrapping()
+    public synchronized boolean getTextWrapping()
     {
-        throw new Error("Not implemented");
+        return wrap;
     }
 
-    public int getLineSpace()
+    public synchronized int getLineSpace()
     {
-        throw new Error("Not implemented");
+        return lineSpace;
     }
 
-    public int getLetterSpace()
+    public synchronized int getLetterSpace()
     {
-        throw new Error("Not implemented");
+        return letterSpace;
     }
 
-    public int getHorizontalTabSpacing()
+    public synchronized int getHorizontalTabSpacing()
     {
-        throw new Error("Not implemented");
+        return horizontalTabSpace;
     }
 
-    public void setInsets(Insets insets)
+    public synchronized void setInsets(Insets insets)
     {
-        throw new Error("Not implemented");
+        if (insets == null)
+            this.insets = new Insets(0, 0, 0, 0);
+        else
+            this.insets = (Insets)insets.clone();
     }
 
-    public Insets getInsets()
+    public synchronized Insets getInsets()
     {
-        throw new Error("Not implemented");
+        return (Insets)insets.clone();
     }
 
     public void addTextOverflowListener(TextOverflowListener listener)
     {
-        throw new Error("Not implemented");
+        synchronized (listeners) {
+            if (listener != null && !listeners.contains(listener))
+                listeners.add(listener);
+        }
     }
 
     public void removeTextOverflowListener(TextOverflowListener listener)
     {
-        throw new Error("Not implemented");
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void notifyOverflow(String markedUpString, HVisible v,
+                                boolean overflowH, boolean overflowV)
+    {
+        Object[] list;
+        synchronized (listeners) {
+            if (listeners.isEmpty())
+                return;
+            list = listeners.toArray();
+        }
+        for (int i = 0; i < list.length; i++) {
+            try {
+                ((TextOverflowListener)list[i]).notifyTextOverflow(markedUpString, v, overflowH, overflowV);
+            } catch (Throwable t) {
+                logger.error("notifyTextOverflow() failed: " + t);
+            }
+        }
     }
-    
+
+    private int horizontalAlign;
+    private int verticalAlign;
+    private int lineOrientation;
+    private int startCorner;
+    private boolean wrap;
+    private int lineSpace;
+    private int letterSpace;
+    private int horizontalTabSpace;
+    private Insets insets = new Insets(0, 0, 0, 0);
+    private LinkedList listeners = new LinkedList();
+    private boolean orientationWarned = false;
+
+    private static final Logger logger = Logger.getLogger(DVBTextLayoutManager.class.getName());
+
     public static final int HORIZONTAL_START_ALIGN = 1;
     public static final int HORIZONTAL_END_ALIGN = 2;
     public static final int HORIZONTAL_CENTER = 3;
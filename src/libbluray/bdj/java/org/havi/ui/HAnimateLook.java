@@ -19,62 +19,162 @@
 
 package org.havi.ui;
 
+import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.Insets;
 
 public class HAnimateLook implements HExtendedLook {
     public HAnimateLook()
     {
-        org.videolan.Logger.unimplemented(HAnimateLook.class.getName(), "");
     }
 
     public void fillBackground(Graphics g, HVisible visible, int state)
     {
-        throw new Error("Not implemented");
+        if (visible.getBackgroundMode() == HVisible.BACKGROUND_FILL) {
+            Color color = visible.getBackground();
+            Dimension dimension = visible.getSize();
+            g.setColor(color);
+            g.fillRect(0, 0, dimension.width, dimension.height);
+        }
     }
 
     public void renderBorders(Graphics g, HVisible visible, int state)
     {
-        throw new Error("Not implemented");
     }
 
-    public void renderVisible(java.awt.Graphics g, HVisible visible, int state)
+    public void renderVisible(Graphics g, HVisible visible, int state)
     {
-        throw new Error("Not implemented");
+        Image image = getImage(visible, state);
+        if (image == null) {
+            return;
+        }
+
+        Insets insets = getInsets(visible);
+        Dimension dimension = visible.getSize();
+        int w = dimension.width - insets.left - insets.right;
+        int h = dimension.height - insets.top - insets.bottom;
+        int iw = image.getWidth(null);
+        int ih = image.getHeight(null);
+        if (iw <= 0 || ih <= 0) {
+            return;
+        }
+
+        int x = insets.left;
+        int y = insets.top;
+        switch (visible.getHorizontalAlignment()) {
+        case HVisible.HALIGN_CENTER:
+            x += (w - iw) / 2;
+            break;
+        case HVisible.HALIGN_RIGHT:
+            x += w - iw;
+            break;
+        case HVisible.HALIGN_JUSTIFY:
+            iw = w;
+            break;
+        }
+        switch (visible.getVerticalAlignment()) {
+        case HVisible.VALIGN_CENTER:
+            y += (h - ih) / 2;
+            break;
+        case HVisible.VALIGN_BOTTOM:
+            y += h - ih;
+            break;
+        case HVisible.VALIGN_JUSTIFY:
+            ih = h;
+            break;
+        }
+
+        g.drawImage(image, x, y, iw, ih, null);
     }
 
-    public void showLook(java.awt.Graphics g, HVisible visible, int state)
+    public void showLook(Graphics g, HVisible visible, int state)
     {
-        throw new Error("Not implemented");
+        fillBackground(g, visible, state);
+        renderVisible(g, visible, state);
+        renderBorders(g, visible, state);
     }
 
     public void widgetChanged(HVisible visible, HChangeData[] changes)
     {
-        throw new Error("Not implemented");
+        visible.repaint();
     }
 
     public Dimension getMinimumSize(HVisible hvisible)
     {
-        throw new Error("Not implemented");
+        return getPreferredSize(hvisible);
     }
 
     public Dimension getPreferredSize(HVisible hvisible)
     {
-        throw new Error("Not implemented");
+        Insets insets = getInsets(hvisible);
+        Dimension size = getContentSize(hvisible);
+        return new Dimension(size.width + insets.left + insets.right,
+                             size.height + insets.top + insets.bottom);
     }
 
     public Dimension getMaximumSize(HVisible hvisible)
     {
-        throw new Error("Not implemented");
+        return getPreferredSize(hvisible);
     }
 
     public boolean isOpaque(HVisible visible)
     {
-        throw new Error("Not implemented");
+        if (visible.getBackgroundMode() != HVisible.BACKGROUND_FILL) {
+            return false;
+        }
+
+        Color bg = visible.getBackground();
+        if ((bg == null) || (bg.getAlpha() < 255)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    public Insets getInsets(HVisible hvisible)
+    {
+        return new Insets(0, 0, 0, 0);
+    }
+
+    /* current frame of animation. States without content use normal state content. */
+    private Image getImage(HVisible visible, int state)
+    {
+        Image[] images = visible.getAnimateContent(state);
+        if (images == null || images.length < 1) {
+            images = visible.getAnimateContent(HState.NORMAL_STATE);
+        }
+        if (images == null || images.length < 1) {
+            return null;
+        }
+
+        int position = 0;
+        if (visible instanceof HAnimateEffect) {
+            position = ((HAnimateEffect)visible).getPosition();
+        }
+        if (position < 0 || position >= images.length) {
+            position = 0;
+        }
+        return images[position];
     }
 
-    public java.awt.Insets getInsets(HVisible hvisible)
+    /* size of largest image */
+    private Dimension getContentSize(HVisible visible)
     {
-        throw new Error("Not implemented");
+        Dimension size = new Dimension(0, 0);
+        for (int state = HState.FIRST_STATE; state <= HState.LAST_STATE; state++) {
+            Image[] images = visible.getAnimateContent(state);
+            if (images == null) {
+                continue;
+            }
+            for (int i = 0; i < images.length; i++) {
+                if (images[i] != null) {
+                    size.width = Math.max(size.width, images[i].getWidth(null));
+                    size.height = Math.max(size.height, images[i].getHeight(null));
+                }
+            }
+        }
+        return size;
     }
 }
@@ -23,33 +23,47 @@ import java.awt.Image;
 import org.havi.ui.event.HFocusEvent;
 import org.havi.ui.event.HFocusListener;
 
+import org.videolan.Logger;
+
 public class HAnimation extends HStaticAnimation implements HNavigable {
     public HAnimation()
     {
-        org.videolan.Logger.unimplemented(HAnimation.class.getName(), "");
+        this(null, null, 1, PLAY_REPEATING, REPEAT_INFINITE, 0, 0, 0, 0);
     }
 
     public HAnimation(Image[] images, int delay, int playMode, int repeatCount,
             int x, int y, int width, int height)
     {
-        org.videolan.Logger.unimplemented(HAnimation.class.getName(), "");
+        this(images, images, delay, playMode, repeatCount, x, y, width, height);
     }
 
     public HAnimation(Image[] imagesNormal, Image[] imagesFocused, int delay,
             int playMode, int repeatCount, int x, int y, int width, int height)
     {
-        org.videolan.Logger.unimplemented(HAnimation.class.getName(), "");
+        super(imagesNormal, delay, playMode, repeatCount, x, y, width, height);
+        try {
+            setLook(getDefaultLook());
+        } catch (HInvalidLookException e) {
+            logger.error("failed setting default look");
+        }
+
+        if (imagesFocused != null) {
+            setAnimateContent(imagesFocused, FOCUSED_STATE);
+            setAnimateContent(imagesFocused, ACTIONED_FOCUSED_STATE);
+            setAnimateContent(imagesFocused, DISABLED_FOCUSED_STATE);
+            setAnimateContent(imagesFocused, DISABLED_ACTIONED_FOCUSED_STATE);
+        }
     }
 
     public HAnimation(Image[] images, int delay, int playMode, int repeatCount)
     {
-        org.videolan.Logger.unimplemented(HAnimation.class.getName(), "");
+        this(images, images, delay, playMode, repeatCount, 0, 0, 0, 0);
     }
 
     public HAnimation(Image[] imagesNormal, Image[] imagesFocused, int delay,
             int playMode, int repeatCount)
     {
-        org.videolan.Logger.unimplemented(HAnimation.class.getName(), "");
+        this(imagesNormal, imagesFocused, delay, playMode, repeatCount, 0, 0, 0, 0);
     }
 
     public static void setDefaultLook(HAnimateLook hlook)
@@ -60,72 +74,84 @@ public class HAnimation extends HStaticAnimation implements HNavigable {
     public static HAnimateLook getDefaultLook()
     {
         if (DefaultLook == null)
-            org.videolan.Logger.unimplemented("", "getDefaultLook");
+            DefaultLook = new HAnimateLook();
         return DefaultLook;
     }
 
     public void setMove(int keyCode, HNavigable target)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("setMove");
     }
 
     public HNavigable getMove(int keyCode)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("getMove");
+        return this;
+    }
+
+    public boolean isFocusable()
+    {
+        return true;
     }
 
     public void setFocusTraversal(HNavigable up, HNavigable down,
             HNavigable left, HNavigable right)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("setFocusTraversal");
     }
 
     public boolean isSelected()
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("isSelected");
+        return false;
     }
 
     public void setGainFocusSound(HSound sound)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("setGainFocusSound");
     }
 
     public void setLoseFocusSound(HSound sound)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("setLoseFocusSound");
     }
 
     public HSound getGainFocusSound()
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("getGainFocusSound");
+        return null;
     }
 
     public HSound getLoseFocusSound()
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("getLoseFocusSound");
+        return null;
     }
 
     public void addHFocusListener(HFocusListener listener)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("addHFocusListener");
     }
 
     public void removeHFocusListener(HFocusListener listener)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("removeHFocusListener");
     }
 
     public int[] getNavigationKeys()
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("getNavigationKeys");
+        return null;
     }
 
     public void processHFocusEvent(HFocusEvent event)
     {
-        throw new Error("Not implemented");
+        logger.unimplemented("processHFocusEvent");
     }
 
     private static HAnimateLook DefaultLook = null;
 
     private static final long serialVersionUID = 4460392782940525395L;
+
+    private static final Logger logger = Logger.getLogger(HAnimation.class.getName());
 }
@@ -21,6 +21,7 @@ package org.havi.ui;
 
 import java.awt.Component;
 import java.awt.Container;
+import java.awt.Graphics;
 import org.dvb.ui.TestOpacity;
 
 //https://www.jinahya.com/mvn/site/com.googlecode.jinahya/ocap-api/1.3.1/apidocs/org/havi/ui/HContainer.html
@@ -47,6 +48,12 @@ public class HContainer extends Container implements HMatteLayer,
         return hMatte;
     }
 
+    /* skip children outside of clip or behind opaque siblings */
+    public void paint(Graphics g)
+    {
+        VisibleRegion.paintChildren(this, g);
+    }
+
     public boolean isDoubleBuffered()
     {
         return false;   // can this be true ?
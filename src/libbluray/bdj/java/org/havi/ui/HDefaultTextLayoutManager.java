@@ -26,7 +26,8 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Insets;
 
-import org.videolan.StrUtil;
+import org.videolan.TextLayoutCache;
+import org.videolan.TextLayoutCache.Layout;
 
 public class HDefaultTextLayoutManager implements HTextLayoutManager {
     static final Insets ZERO_INSETS = new Insets(0, 0, 0, 0);
@@ -39,27 +40,24 @@ public class HDefaultTextLayoutManager implements HTextLayoutManager {
     {
         Dimension size = new Dimension(0, 0);
 
+        Font font = hvisible.getFont();
+        if (font == null)
+            return size;
+        FontMetrics fontMetrics = null;
+
         for (int state = HVisible.FIRST_STATE; state <= HVisible.LAST_STATE; state++) {
             String text = hvisible.getTextContent(state);
             if (text != null && !text.equals("")) {
-                String[] lines = StrUtil.split(text, '\n');
+                if (fontMetrics == null)
+                    fontMetrics = hvisible.getFontMetrics(font);
 
-                Graphics g = hvisible.getGraphics();
-                FontMetrics fontMetrics = g.getFontMetrics(hvisible.getFont());
-                g.dispose();
+                Layout layout = getLayout(text, font, fontMetrics);
 
-                int lineHeight = fontMetrics.getHeight();
-                int textHeight = lines.length * lineHeight;
-                if (textHeight > size.height) {
+                int textHeight = layout.getLineCount() * fontMetrics.getHeight();
+                if (textHeight > size.height)
                     size.height = textHeight;
-                }
-
-                for (int i = 0; i < lines.length; i++) {
-                    int lineWidth = fontMetrics.stringWidth(lines[i]);
-
-                    if (lineWidth > size.width)
-                        size.width = lineWidth;
-                }
+                if (layout.getWidth() > size.width)
+                    size.width = layout.getWidth();
             }
         }
         return size;
@@ -83,22 +81,20 @@ public class HDefaultTextLayoutManager implements HTextLayoutManager {
         if (insets == null)
             insets = ZERO_INSETS;
 
-        String[] lines = StrUtil.split(markedUpString, '\n');
-
         Font font = v.getFont();
         g.setFont(font);
         FontMetrics fontMetrics = g.getFontMetrics();
 
-        int ascent = fontMetrics.getAscent();
+        Layout layout = getLayout(markedUpString, font, fontMetrics);
+
+        /* baselines are one descent lower than in layout (compatibility) */
         int descent = Math.abs(fontMetrics.getDescent());
-        int leading = fontMetrics.getLeading();
-        int stringHeight = ascent + descent + leading;
-        int textHeight = lines.length * stringHeight;
+        int textHeight = layout.getLineCount() * fontMetrics.getHeight();
 
         int x = 0;
         int y = 0;
-        for (int i = 0; i < lines.length; i++) {
-            int lineWidth = fontMetrics.stringWidth(lines[i]);
+        for (int i = 0; i < layout.getLineCount(); i++) {
+            int lineWidth = layout.getLineWidth(i);
 
             switch (v.getHorizontalAlignment()) {
                 case HVisible.HALIGN_LEFT:
@@ -113,24 +109,30 @@ public class HDefaultTextLayoutManager implements HTextLayoutManager {
                     break;
             }
 
+            int baseline = layout.getBaseline(i) + descent;
             switch (v.getVerticalAlignment()) {
 
             case HVisible.VALIGN_TOP:
-                y = insets.top + ascent + descent + i * stringHeight;
+                y = insets.top + baseline;
                 break;
             case HVisible.VALIGN_BOTTOM:
-                y = v.getHeight() - insets.bottom - textHeight +
-                    ascent + descent + i * stringHeight;
+                y = v.getHeight() - insets.bottom - textHeight + baseline;
                 break;
             case HVisible.VALIGN_CENTER:
             case HVisible.VALIGN_JUSTIFY:
                 y = insets.top +
                     (v.getHeight() - insets.top - insets.bottom - textHeight) / 2 +
-                    ascent + descent + i * stringHeight;
+                    baseline;
                 break;
             }
 
-            g.drawString(lines[i], x, y);
+            layout.drawLine(g, i, x, y);
         }
     }
+
+    private static Layout getLayout(String text, Font font, FontMetrics fontMetrics)
+    {
+        return TextLayoutCache.getLayout(text, font, fontMetrics, TextLayoutCache.NO_WRAP,
+                                         -1, 0, 0);
+    }
 }
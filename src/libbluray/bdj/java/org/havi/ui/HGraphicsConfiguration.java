@@ -19,6 +19,7 @@
 
 package org.havi.ui;
 
+import java.awt.BDToolkit;
 import java.awt.Dimension;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
@@ -65,6 +66,19 @@ public class HGraphicsConfiguration extends HScreenConfiguration {
     }
 
     public Image getCompatibleImage(Image input, HImageHints ih) {
+        if (input != null && ih != null) {
+            /* smooth scaling for photos, pixel replication for sharp edges */
+            switch (ih.getType()) {
+            case HImageHints.NATURAL_IMAGE:
+                BDToolkit.setScalingHint(input, Image.SCALE_SMOOTH);
+                break;
+            case HImageHints.CARTOON:
+            case HImageHints.BUSINESS_GRAPHICS:
+            case HImageHints.LINE_ART:
+                BDToolkit.setScalingHint(input, Image.SCALE_REPLICATE);
+                break;
+            }
+        }
         return input;
     }
 
@@ -50,30 +50,63 @@ public class HScene extends Container implements HComponentOrdering {
     }
 
     public void paint(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        Rectangle bounds = new Rectangle(0, 0, super.getWidth(), super.getHeight());
+        clip = (clip == null) ? bounds : clip.intersection(bounds);
+        if (clip.isEmpty()) {
+            return;
+        }
+
+        /* find visible children and visible parts of background */
+        Component[] children = getComponents();
+        VisibleRegion background = new VisibleRegion(clip);
+        Rectangle[] paintClip = VisibleRegion.cull(children, clip, background);
+
+        if (!background.isEmpty()) {
+            paintBackground(g, background);
+        }
+
+        VisibleRegion.paint(children, paintClip, g);
+    }
+
+    private void paintBackground(Graphics g, VisibleRegion visible) {
         if (backgroundMode == BACKGROUND_FILL) {
+            Rectangle[] rects = visible.getRects();
             g.setColor(getBackground());
-            g.fillRect(super.getX(), super.getY(), super.getWidth(), super
-                    .getHeight());
+            for (int i = 0; i < rects.length; i++) {
+                g.fillRect(rects[i].x, rects[i].y, rects[i].width, rects[i].height);
+            }
         }
 
         if (image != null) {
-            switch (imageMode) {
-            case IMAGE_CENTER:
-                g.drawImage(image, (super.getWidth() - image.getWidth(null)) / 2,
-                        (super.getHeight() - image.getHeight(null)) / 2, null);
-                break;
-            case IMAGE_STRETCH:
-                g.drawImage(image, super.getX(), super.getY(), super.getWidth(), super.getHeight(), null);
-                break;
-            case IMAGE_TILE:
-                for (int x = super.getX(); x < super.getWidth(); x += image.getWidth(null))
-                    for (int y = super.getY(); y < super.getHeight(); y += image.getHeight(null))
-                        g.drawImage(image, x, y, null);
-                break;
+            Rectangle r = visible.getBounds();
+            Graphics ig = g.create();
+            try {
+                ig.clipRect(r.x, r.y, r.width, r.height);
+                switch (imageMode) {
+                case IMAGE_CENTER:
+                    ig.drawImage(image, (super.getWidth() - image.getWidth(null)) / 2,
+                                 (super.getHeight() - image.getHeight(null)) / 2, null);
+                    break;
+                case IMAGE_STRETCH:
+                    ig.drawImage(image, 0, 0, super.getWidth(), super.getHeight(), null);
+                    break;
+                case IMAGE_TILE:
+                    int iw = image.getWidth(null);
+                    int ih = image.getHeight(null);
+                    if (iw <= 0 || ih <= 0) {
+                        break;
+                    }
+                    /* only tiles inside visible area */
+                    for (int x = (r.x / iw) * iw; x < r.x + r.width; x += iw)
+                        for (int y = (r.y / ih) * ih; y < r.y + r.height; y += ih)
+                            ig.drawImage(image, x, y, null);
+                    break;
+                }
+            } finally {
+                ig.dispose();
             }
         }
-
-        super.paint(g);
     }
 
     public boolean isDoubleBuffered() {
@@ -120,9 +120,15 @@ public class HSceneFactory extends Object {
                 dispose(defaultHScene);
             }
         }
+        lookCache.clear();
+    }
+
+    LookCache getLookCache() {
+        return lookCache;
     }
 
     private HScene defaultHScene = null;
+    private LookCache lookCache = new LookCache();
 
     private static final Logger logger = Logger.getLogger(HSceneFactory.class.getName());
 }
@@ -19,30 +19,46 @@
 
 package org.havi.ui;
 
+import java.awt.Graphics;
 import java.awt.Image;
 
+import org.videolan.AnimationScheduler;
+import org.videolan.VideoClock;
+
 public class HStaticAnimation extends HVisible implements HNoInputPreferred,
         HAnimateEffect {
     public HStaticAnimation()
     {
-        org.videolan.Logger.unimplemented(HStaticAnimation.class.getName(), "");
+        this(null, 1, PLAY_REPEATING, REPEAT_INFINITE);
     }
 
     public HStaticAnimation(Image[] imagesNormal, int delay, int playMode,
             int repeatCount, int x, int y, int width, int height)
     {
-        org.videolan.Logger.unimplemented(HStaticAnimation.class.getName(), "");
+        super(getDefaultLook(), x, y, width, height);
+        init(imagesNormal, delay, playMode, repeatCount);
     }
 
     public HStaticAnimation(Image[] imagesNormal, int delay, int playMode,
             int repeatCount)
     {
-        org.videolan.Logger.unimplemented(HStaticAnimation.class.getName(), "");
+        super(getDefaultLook());
+        init(imagesNormal, delay, playMode, repeatCount);
+    }
+
+    private void init(Image[] imagesNormal, int delay, int playMode, int repeatCount)
+    {
+        setAnimateContent(imagesNormal, ALL_STATES);
+        setDelay(delay);
+        setPlayMode(playMode);
+        setRepeatCount(repeatCount);
     }
 
     public void setLook(HLook hlook) throws HInvalidLookException
     {
-        throw new Error("Not implemented");
+        if ((hlook != null) && !(hlook instanceof HAnimateLook))
+            throw new HInvalidLookException();
+        super.setLook(hlook);
     }
 
     public static void setDefaultLook(HAnimateLook hlook)
@@ -53,65 +69,208 @@ public class HStaticAnimation extends HVisible implements HNoInputPreferred,
     public static HAnimateLook getDefaultLook()
     {
         if (DefaultLook == null)
-            org.videolan.Logger.unimplemented("", "getDefaultLook");
+            DefaultLook = new HAnimateLook();
         return DefaultLook;
     }
 
     public void start()
     {
-        throw new Error("Not implemented");
+        AnimationClient old;
+        AnimationClient client = new AnimationClient();
+        synchronized (animationLock) {
+            old = animation;
+            animation = client;
+            repeatsDone = 0;
+            direction = 1;
+        }
+        if (old != null) {
+            AnimationScheduler.getInstance().remove(old);
+        }
+        AnimationScheduler.getInstance().add(client, Thread.NORM_PRIORITY);
     }
 
     public void stop()
     {
-        throw new Error("Not implemented");
+        AnimationClient old;
+        synchronized (animationLock) {
+            old = animation;
+            animation = null;
+        }
+        /* do not hold lock: scheduler may be advancing this animation */
+        if (old != null) {
+            AnimationScheduler.getInstance().remove(old);
+        }
     }
 
     public boolean isAnimated()
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            return animation != null;
+        }
     }
 
     public void setPosition(int position)
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            int length = getLength();
+            if (position >= length) {
+                position = length - 1;
+            }
+            if (position < 0) {
+                position = 0;
+            }
+            this.position = position;
+        }
+        repaint();
     }
 
     public int getPosition()
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            return position;
+        }
     }
 
     public void setRepeatCount(int count)
     {
-        throw new Error("Not implemented");
+        if (count != REPEAT_INFINITE && count < 1) {
+            throw new IllegalArgumentException("invalid repeat count " + count);
+        }
+        synchronized (animationLock) {
+            repeatCount = count;
+            repeatsDone = 0;
+        }
     }
 
     public int getRepeatCount()
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            return repeatCount;
+        }
     }
 
     public void setDelay(int count)
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            delay = Math.max(1, count);
+        }
     }
 
     public int getDelay()
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            return delay;
+        }
     }
 
     public void setPlayMode(int mode)
     {
-        throw new Error("Not implemented");
+        if (mode != PLAY_REPEATING && mode != PLAY_ALTERNATING) {
+            throw new IllegalArgumentException("invalid play mode " + mode);
+        }
+        synchronized (animationLock) {
+            playMode = mode;
+        }
     }
 
     public int getPlayMode()
     {
-        throw new Error("Not implemented");
+        synchronized (animationLock) {
+            return playMode;
+        }
+    }
+
+    /* number of images in current state */
+    private int getLength()
+    {
+        Image[] images = getAnimateContent(getInteractionState());
+        if (images == null || images.length < 1) {
+            images = getAnimateContent(NORMAL_STATE);
+        }
+        return (images == null) ? 0 : images.length;
+    }
+
+    /*
+     * Move to next image.
+     * Returns false when the last repeat has been played.
+     */
+    private boolean step()
+    {
+        int length = getLength();
+        if (length < 2) {
+            return true;
+        }
+        boolean last = (repeatCount != REPEAT_INFINITE) && (repeatsDone + 1 >= repeatCount);
+
+        if (playMode == PLAY_ALTERNATING) {
+            if (direction < 0 && position <= 0) {
+                if (last) {
+                    return false;
+                }
+                repeatsDone++;
+                direction = 1;
+            } else if (direction > 0 && position >= length - 1) {
+                direction = -1;
+            }
+            position = Math.max(0, Math.min(length - 1, position + direction));
+        } else {
+            if (position >= length - 1) {
+                if (last) {
+                    return false;
+                }
+                repeatsDone++;
+                position = 0;
+            } else {
+                position++;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Animation is stepped by the shared animation scheduler.
+     * Images are painted through normal AWT repaint.
+     */
+    private class AnimationClient implements AnimationScheduler.Client {
+        public long advance(long now)
+        {
+            long period;
+            synchronized (animationLock) {
+                if (animation != this) {
+                    return -1;
+                }
+                period = (long)delay * VideoClock.TICKS_PER_SECOND / 10;
+                if (!started) {
+                    /* first image is shown for full delay */
+                    started = true;
+                    return now + period;
+                }
+                if (!step()) {
+                    animation = null;
+                    return -1;
+                }
+            }
+            repaint();
+            return now + period;
+        }
+
+        public boolean paint(Graphics g)
+        {
+            return false;
+        }
+
+        private boolean started = false;
     }
 
+    private transient Object animationLock = new Object();
+    private transient AnimationClient animation = null;
+    private int position = 0;
+    private int delay = 1;
+    private int playMode = PLAY_REPEATING;
+    private int repeatCount = REPEAT_INFINITE;
+    private int repeatsDone = 0;
+    private int direction = 1;
+
     private static HAnimateLook DefaultLook = null;
 
     private static final long serialVersionUID = -7320112528206101937L;
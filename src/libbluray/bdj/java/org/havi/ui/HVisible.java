@@ -20,6 +20,8 @@
 
 package org.havi.ui;
 
+import java.awt.Color;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Dimension;
@@ -58,8 +60,128 @@ public class HVisible extends HComponent implements HState {
 
     public void paint(Graphics g)
     {
-        if (hLook != null)
-            hLook.showLook(g, this, InteractionState);
+        if (hLook != null) {
+            if (!paintCached(g))
+                hLook.showLook(g, this, InteractionState);
+        }
+    }
+
+    /*
+     * Retained rendering (see LookCache).
+     * Look is rendered once for each interaction state to an off-screen image,
+     * and the image is drawn in subsequent repaints.
+     */
+
+    private boolean paintCached(Graphics g)
+    {
+        if (!LookCache.isEnabled() || !isCacheable()) {
+            return false;
+        }
+
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        int state = InteractionState & ALL_STATES;
+        Image image = null;
+        LookCache owner;
+        boolean resized;
+        synchronized (this) {
+            resized = renderCache != null && (renderWidth != width || renderHeight != height);
+        }
+        if (resized) {
+            /* release budget of old images too */
+            invalidateRenderCache();
+        }
+        synchronized (this) {
+            if (renderCache != null && renderWidth == width && renderHeight == height) {
+                image = renderCache[state];
+            }
+            owner = renderOwner;
+        }
+
+        if (image != null) {
+            if (owner != null) {
+                owner.touch(this);
+            }
+            g.drawImage(image, 0, 0, null);
+            return true;
+        }
+
+        owner = LookCache.getInstance();
+        if (owner == null) {
+            return false;
+        }
+        image = createImage(width, height);
+        if (image == null) {
+            return false;
+        }
+
+        Graphics ig = image.getGraphics();
+        try {
+            ig.setFont(getFont());
+            ig.setColor(getForeground());
+            hLook.showLook(ig, this, state);
+        } finally {
+            ig.dispose();
+        }
+
+        boolean stored = false;
+        synchronized (this) {
+            if (renderCache == null) {
+                renderCache = new Image[ALL_STATES + 1];
+                renderWidth = width;
+                renderHeight = height;
+            }
+            /* size may have changed while rendering */
+            if (renderWidth == width && renderHeight == height) {
+                renderCache[state] = image;
+                renderOwner = owner;
+                stored = true;
+            }
+        }
+        if (stored) {
+            owner.add(this, (long)width * height * 4);
+        }
+
+        g.drawImage(image, 0, 0, null);
+        return true;
+    }
+
+    /* only built-in text look (not its subclasses).
+     * HGraphicLook and HAnimateLook do not render in this implementation. */
+    private boolean isCacheable()
+    {
+        if (getMatte() != null) {
+            return false;
+        }
+        /* application subclasses may render state HVisible does not track */
+        Class c = (hLook != null) ? hLook.getClass() : null;
+        return c == HTextLook.class;
+    }
+
+    /* called by LookCache when images are evicted */
+    synchronized void dropRenderCache()
+    {
+        renderCache = null;
+        renderOwner = null;
+    }
+
+    private void invalidateRenderCache()
+    {
+        LookCache owner;
+        synchronized (this) {
+            if (renderCache == null) {
+                return;
+            }
+            owner = renderOwner;
+            dropRenderCache();
+        }
+        if (owner != null) {
+            owner.remove(this);
+        }
     }
 
     public void update(Graphics g)
@@ -113,6 +235,10 @@ public class HVisible extends HComponent implements HState {
     }
 
     private void visibleChanged(int hint, Object data) {
+        /* rendering of each state is cached separately */
+        if (hint != STATE_CHANGE) {
+            invalidateRenderCache();
+        }
         if (hLook == null) {
             return;
         }
@@ -157,6 +283,31 @@ public class HVisible extends HComponent implements HState {
     public void setLook(HLook hlook) throws HInvalidLookException
     {
         hLook = hlook;
+        invalidateRenderCache();
+    }
+
+    public void setMatte(HMatte m) throws HMatteException
+    {
+        super.setMatte(m);
+        invalidateRenderCache();
+    }
+
+    public void setFont(Font font)
+    {
+        super.setFont(font);
+        invalidateRenderCache();
+    }
+
+    public void setForeground(Color color)
+    {
+        super.setForeground(color);
+        invalidateRenderCache();
+    }
+
+    public void setBackground(Color color)
+    {
+        super.setBackground(color);
+        invalidateRenderCache();
     }
 
     public HLook getLook()
@@ -213,6 +364,7 @@ public class HVisible extends HComponent implements HState {
     public void setTextLayoutManager(HTextLayoutManager manager)
     {
         TextLayoutManager = manager;
+        invalidateRenderCache();
     }
 
     public HTextLayoutManager getTextLayoutManager()
@@ -232,6 +384,7 @@ public class HVisible extends HComponent implements HState {
             throw new IllegalArgumentException("Unknown background fill mode");
         }
         BackgroundMode = mode;
+        invalidateRenderCache();
     }
 
     public boolean isOpaque()
@@ -262,6 +415,8 @@ public class HVisible extends HComponent implements HState {
 
     public void setLookData(Object key, Object data)
     {
+        invalidateRenderCache();
+
         if (lookData == null) {
             lookData = new Hashtable();
         }
@@ -421,5 +576,11 @@ public class HVisible extends HComponent implements HState {
     private Object content[];
     private Dimension defaultSize = NO_DEFAULT_SIZE;
 
+    /* rendered look for each interaction state */
+    private Image[] renderCache = null;
+    private int renderWidth;
+    private int renderHeight;
+    private LookCache renderOwner = null;
+
     private static final Logger logger = Logger.getLogger(HVisible.class.getName());
 }
@@ -0,0 +1,133 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.havi.ui;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
+/*
+ * Memory budget of HVisible render caches of one xlet.
+ *
+ * HVisible can keep the look rendered for each interaction state in
+ * an off-screen image. Memory used by these images is limited per xlet
+ * (system property bluray.havi.look_cache, KiB). Render caching is
+ * disabled when the property is not set.
+ * Least recently painted components lose their cached images first.
+ */
+
+class LookCache {
+
+    static final long BUDGET = getBudget();
+
+    static boolean isEnabled() {
+        return BUDGET > 0;
+    }
+
+    /* budget of current xlet, null if there is no xlet context */
+    static LookCache getInstance() {
+        BDJXletContext context = BDJXletContext.getCurrentContext();
+        if (context == null) {
+            return null;
+        }
+        HSceneFactory factory = HSceneFactory.getInstance();
+        if (factory == null) {
+            return null;
+        }
+        return factory.getLookCache();
+    }
+
+    /* visible cached an image */
+    void add(HVisible visible, long bytes) {
+        /* dropRenderCache() locks the HVisible. Call it without holding
+         * this lock: remove() may be called with a HVisible lock held. */
+        ArrayList evicted = new ArrayList();
+        synchronized (this) {
+            Long old = (Long)entries.remove(visible);
+            if (old != null) {
+                used -= old.longValue();
+            }
+            bytes += (old != null) ? old.longValue() : 0;
+            entries.put(visible, new Long(bytes));
+            used += bytes;
+
+            Iterator it = entries.keySet().iterator();
+            while (used > BUDGET && it.hasNext()) {
+                HVisible v = (HVisible)it.next();
+                if (v == visible) {
+                    continue;
+                }
+                used -= ((Long)entries.get(v)).longValue();
+                it.remove();
+                evicted.add(v);
+            }
+        }
+        for (int i = 0; i < evicted.size(); i++) {
+            ((HVisible)evicted.get(i)).dropRenderCache();
+        }
+    }
+
+    /* visible painted from cache */
+    synchronized void touch(HVisible visible) {
+        entries.get(visible);
+    }
+
+    /* cached images of visible were dropped */
+    synchronized void remove(HVisible visible) {
+        Long old = (Long)entries.remove(visible);
+        if (old != null) {
+            used -= old.longValue();
+        }
+    }
+
+    /* xlet is terminating */
+    void clear() {
+        HVisible[] visibles;
+        synchronized (this) {
+            visibles = (HVisible[])entries.keySet().toArray(new HVisible[entries.size()]);
+            entries.clear();
+            used = 0;
+        }
+        for (int i = 0; i < visibles.length; i++) {
+            visibles[i].dropRenderCache();
+        }
+    }
+
+    private static long getBudget() {
+        try {
+            String prop = System.getProperty("bluray.havi.look_cache");
+            if (prop != null) {
+                return Long.parseLong(prop) * 1024;
+            }
+        } catch (Exception e) {
+            logger.error("invalid bluray.havi.look_cache: " + e);
+        }
+        return 0;
+    }
+
+    private long used = 0;
+    /* HVisible -> Long (bytes), in access order */
+    private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+
+    private static final Logger logger = Logger.getLogger(LookCache.class.getName());
+}
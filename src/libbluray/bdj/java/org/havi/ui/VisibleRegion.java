@@ -0,0 +1,180 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.havi.ui;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+/*
+ * Visible part of a rectangle, as a list of non-overlapping rectangles.
+ *
+ * Used to skip painting of components that are outside of the repaint
+ * clip or covered by opaque components above them.
+ */
+
+class VisibleRegion {
+
+    /* region is simplified to its bounding box when it gets too fragmented */
+    private static final int MAX_RECTS = 32;
+
+    VisibleRegion(Rectangle r) {
+        if (!r.isEmpty()) {
+            rects.add(new Rectangle(r));
+        }
+    }
+
+    boolean isEmpty() {
+        return rects.isEmpty();
+    }
+
+    Rectangle[] getRects() {
+        return (Rectangle[])rects.toArray(new Rectangle[rects.size()]);
+    }
+
+    Rectangle getBounds() {
+        Rectangle bounds = null;
+        for (int i = 0; i < rects.size(); i++) {
+            Rectangle r = (Rectangle)rects.get(i);
+            if (bounds == null) {
+                bounds = new Rectangle(r);
+            } else {
+                bounds.add(r);
+            }
+        }
+        return bounds;
+    }
+
+    void subtract(Rectangle o) {
+        if (o.isEmpty() || rects.size() > MAX_RECTS) {
+            return;
+        }
+
+        ArrayList result = new ArrayList(rects.size() + 4);
+        for (int i = 0; i < rects.size(); i++) {
+            Rectangle r = (Rectangle)rects.get(i);
+            if (!r.intersects(o)) {
+                result.add(r);
+                continue;
+            }
+            int x0 = r.x, y0 = r.y, x1 = r.x + r.width, y1 = r.y + r.height;
+            int ox0 = Math.max(o.x, x0), oy0 = Math.max(o.y, y0);
+            int ox1 = Math.min(o.x + o.width, x1), oy1 = Math.min(o.y + o.height, y1);
+
+            /* parts above, below, left and right of the covered area */
+            if (oy0 > y0) result.add(new Rectangle(x0, y0, x1 - x0, oy0 - y0));
+            if (oy1 < y1) result.add(new Rectangle(x0, oy1, x1 - x0, y1 - oy1));
+            if (ox0 > x0) result.add(new Rectangle(x0, oy0, ox0 - x0, oy1 - oy0));
+            if (ox1 < x1) result.add(new Rectangle(ox1, oy0, x1 - ox1, oy1 - oy0));
+        }
+        rects = result;
+
+        if (rects.size() > MAX_RECTS) {
+            Rectangle bounds = getBounds();
+            rects.clear();
+            rects.add(bounds);
+        }
+    }
+
+    /*
+     * Find visible part of each child (child 0 is top-most).
+     * Children outside of clip or hidden by opaque siblings get null clip.
+     * Areas covered by opaque children are removed from uncovered region.
+     */
+    static Rectangle[] cull(Component[] children, Rectangle clip, VisibleRegion uncovered) {
+        Rectangle[] paintClip = new Rectangle[children.length];
+        ArrayList opaque = new ArrayList();
+
+        for (int i = 0; i < children.length; i++) {
+            Component c = children[i];
+            if (c == null || !c.isVisible()) {
+                continue;
+            }
+            Rectangle bounds = c.getBounds().intersection(clip);
+            if (bounds.isEmpty()) {
+                continue;
+            }
+
+            VisibleRegion visible = new VisibleRegion(bounds);
+            for (int j = 0; j < opaque.size() && !visible.isEmpty(); j++) {
+                visible.subtract((Rectangle)opaque.get(j));
+            }
+            if (visible.isEmpty()) {
+                continue;
+            }
+            paintClip[i] = visible.getBounds();
+
+            if (isOpaque(c)) {
+                opaque.add(bounds);
+                if (uncovered != null) {
+                    uncovered.subtract(bounds);
+                }
+            }
+        }
+
+        return paintClip;
+    }
+
+    /* paint children bottom to top, each clipped to its visible area */
+    static void paint(Component[] children, Rectangle[] paintClip, Graphics g) {
+        for (int i = children.length - 1; i >= 0; i--) {
+            Rectangle r = paintClip[i];
+            if (r == null) {
+                continue;
+            }
+            Component c = children[i];
+            Rectangle b = c.getBounds();
+            Graphics cg = g.create(b.x, b.y, b.width, b.height);
+            try {
+                cg.clipRect(r.x - b.x, r.y - b.y, r.width, r.height);
+                c.paint(cg);
+            } finally {
+                cg.dispose();
+            }
+        }
+    }
+
+    /* paint container children, skipping hidden ones */
+    static void paintChildren(Container container, Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, container.getWidth(), container.getHeight());
+        }
+        Component[] children = container.getComponents();
+        paint(children, cull(children, clip, null), g);
+    }
+
+    /* only HAVi components report opacity reliably */
+    private static boolean isOpaque(Component c) {
+        if (!(c instanceof HComponent) && !(c instanceof HContainer)) {
+            return false;
+        }
+        try {
+            return c.isOpaque();
+        } catch (Error e) {
+            /* look without isOpaque() implementation */
+            return false;
+        }
+    }
+
+    private ArrayList rects = new ArrayList();
+}
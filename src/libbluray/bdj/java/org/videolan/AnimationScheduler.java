@@ -0,0 +1,282 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.awt.BDWindowGraphics;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * Scheduler for all running animations.
+ *
+ * Animations are kept in a hashed timing wheel indexed by due time
+ * (VideoClock ticks). One thread wakes up on each video frame, advances
+ * all due animations, paints them to root window in one batch and
+ * flushes the overlay once.
+ * Thread exits when there are no animations.
+ */
+
+public class AnimationScheduler implements Runnable {
+
+    public interface Client {
+        /*
+         * Advance animation to clock time.
+         * Returns next due time (clock ticks), or -1 if animation has ended.
+         */
+        long advance(long now);
+
+        /*
+         * Paint changes to root window.
+         * Returns true if something was painted.
+         */
+        boolean paint(Graphics g);
+    }
+
+    private static final int  WHEEL_SIZE = 256;                                  /* power of 2 */
+    private static final long SLOT_TICKS = VideoClock.TICKS_PER_SECOND / 100;    /* 10 ms */
+
+    private static final AnimationScheduler instance = new AnimationScheduler();
+
+    public static AnimationScheduler getInstance() {
+        return instance;
+    }
+
+    /*
+     * Add animation. Animation is advanced for the first time at next tick.
+     * Scheduler thread priority is raised to highest requested priority.
+     */
+    public void add(Client client, int priority) {
+        synchronized (lock) {
+            if (entries.containsKey(client)) {
+                return;
+            }
+            Entry e = new Entry(client);
+            entries.put(client, e);
+            schedule(e, clock.getTime());
+
+            priority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, priority));
+            if (thread == null) {
+                threadPriority = priority;
+                thread = new Thread(this, "AnimationScheduler");
+                thread.setDaemon(true);
+                thread.setPriority(priority);
+                thread.start();
+            } else if (priority > threadPriority) {
+                threadPriority = priority;
+                thread.setPriority(priority);
+            }
+        }
+    }
+
+    /*
+     * Remove animation.
+     * Animation is not advanced or painted after this returns
+     * (unless called from the animation itself).
+     */
+    public void remove(Client client) {
+        synchronized (lock) {
+            Entry e = (Entry)entries.remove(client);
+            if (e != null) {
+                e.cancelled = true;
+            }
+        }
+        if (Thread.currentThread() != thread) {
+            /* wait until possibly running pass has completed */
+            synchronized (tickLock) {
+            }
+        }
+    }
+
+    public void run() {
+        while (true) {
+            long wait;
+            synchronized (lock) {
+                if (entries.isEmpty()) {
+                    thread = null;
+                    return;
+                }
+                wait = getWaitTime();
+            }
+
+            try {
+                clock.waitUpdate(wait);
+            } catch (InterruptedException e) {
+                logger.error("AnimationScheduler interrupted");
+            }
+
+            synchronized (tickLock) {
+                tick();
+            }
+        }
+    }
+
+    /*
+     *
+     */
+
+    private static class Entry {
+        Entry(Client client) {
+            this.client = client;
+        }
+        Client  client;
+        long    due;
+        volatile boolean cancelled = false;
+        Entry   next;
+    }
+
+    private void schedule(Entry e, long due) {
+        long slot = Math.max(due / SLOT_TICKS, currentSlot);
+        int index = (int)(slot & (WHEEL_SIZE - 1));
+        e.due = due;
+        e.next = wheel[index];
+        wheel[index] = e;
+        if (due < nextDue) {
+            nextDue = due;
+        }
+    }
+
+    /* collect due entries from wheel */
+    private void collect(long now, ArrayList due) {
+        long nowSlot = now / SLOT_TICKS;
+        long slots = Math.min(nowSlot - currentSlot + 1, WHEEL_SIZE);
+
+        for (long s = 0; s < slots; s++) {
+            int index = (int)((currentSlot + s) & (WHEEL_SIZE - 1));
+            Entry prev = null;
+            for (Entry e = wheel[index]; e != null; e = e.next) {
+                if (e.cancelled || e.due <= now) {
+                    if (prev == null) {
+                        wheel[index] = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    if (!e.cancelled) {
+                        due.add(e);
+                    }
+                } else {
+                    prev = e;
+                }
+            }
+        }
+        currentSlot = Math.max(currentSlot, nowSlot);
+
+        /* find next due time. Collected entries are re-scheduled after advance(). */
+        nextDue = Long.MAX_VALUE;
+        for (Iterator it = entries.values().iterator(); it.hasNext(); ) {
+            Entry e = (Entry)it.next();
+            if (e.due > now && e.due < nextDue) {
+                nextDue = e.due;
+            }
+        }
+    }
+
+    /* time to wait for next due animation (ms). Thread is woken up by video frames too. */
+    private long getWaitTime() {
+        long maxWait = 40;
+        float fps = clock.getFrameRate();
+        if (fps > 0.0f) {
+            maxWait = (long)(1000.0f / fps);
+        }
+        if (nextDue == Long.MAX_VALUE) {
+            return maxWait;
+        }
+        long wait = (nextDue - clock.getTime()) * 1000 / VideoClock.TICKS_PER_SECOND;
+        return Math.max(1, Math.min(maxWait, wait));
+    }
+
+    private void tick() {
+        ArrayList due = new ArrayList();
+        long now = clock.getTime();
+
+        synchronized (lock) {
+            collect(now, due);
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        /* advance */
+        for (int i = 0; i < due.size(); i++) {
+            Entry e = (Entry)due.get(i);
+            long next = -1;
+            try {
+                next = e.client.advance(now);
+            } catch (Throwable t) {
+                logger.error("animation failed: " + t);
+            }
+            synchronized (lock) {
+                if (e.cancelled) {
+                    continue;
+                }
+                if (next < 0) {
+                    entries.remove(e.client);
+                    e.cancelled = true;
+                } else {
+                    schedule(e, Math.max(next, now + 1));
+                }
+            }
+        }
+
+        /* paint all changes and flush once */
+        GUIManager gui = GUIManager.getInstance();
+        if (gui == null) {
+            return;
+        }
+        Graphics g = null;
+        boolean painted = false;
+        try {
+            for (int i = 0; i < due.size(); i++) {
+                Entry e = (Entry)due.get(i);
+                if (e.cancelled) {
+                    continue;
+                }
+                if (g == null) {
+                    g = new BDWindowGraphics(gui);
+                }
+                try {
+                    painted |= e.client.paint(g);
+                } catch (Throwable t) {
+                    logger.error("animation paint failed: " + t);
+                }
+            }
+        } finally {
+            if (g != null) {
+                g.dispose();
+            }
+        }
+        if (painted) {
+            gui.sync();
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Object tickLock = new Object();
+    private final VideoClock clock = VideoClock.getInstance();
+    private final Entry[] wheel = new Entry[WHEEL_SIZE];
+    private final HashMap entries = new HashMap();
+    private long currentSlot = 0;
+    private long nextDue = Long.MAX_VALUE;
+    private Thread thread = null;
+    private int threadPriority = Thread.NORM_PRIORITY;
+
+    private static final Logger logger = Logger.getLogger(AnimationScheduler.class.getName());
+}
@@ -18,20 +18,43 @@
 
 package org.videolan;
 
-import java.util.LinkedList;
+/*
+ * Action queue with single consumer thread.
+ *
+ * Queue is a singly linked list. Lock is held only while linking / unlinking
+ * one node, and consumer thread is woken up only when it is waiting.
+ *
+ * Queue can be bounded. When bounded queue is full, new action is handled
+ * according to overflow policy.
+ */
 
 public class BDJActionQueue implements Runnable {
+
+    /* overflow policies */
+    public static final int OVERFLOW_BLOCK       = 0;  /* wait until there is space in queue */
+    public static final int OVERFLOW_DROP_NEWEST = 1;  /* abort new action */
+    public static final int OVERFLOW_DROP_OLDEST = 2;  /* abort oldest queued action */
+
     public BDJActionQueue(String name) {
         this(null, name);
     }
 
     public BDJActionQueue(BDJThreadGroup threadGroup, String name) {
+        this(threadGroup, name, 0, OVERFLOW_BLOCK);
+    }
+
+    /* capacity 0: unbounded */
+    public BDJActionQueue(BDJThreadGroup threadGroup, String name, int capacity, int overflowPolicy) {
         if (threadGroup == null) {
             if (BDJXletContext.getCurrentContext() != null) {
-                Logger.getLogger(BDJActionQueue.class.getName()).error("BDJActionQueue created from wrong context: " + Logger.dumpStack());
+                logger.error("BDJActionQueue created from wrong context: " + Logger.dumpStack());
             }
         }
 
+        this.name = name;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+
         /* run all actions in given thread group / xlet context */
         thread = new Thread(threadGroup, this, name + ".BDJActionQueue");
         thread.setDaemon(true);
@@ -39,55 +62,231 @@ public class BDJActionQueue implements Runnable {
     }
 
     public void shutdown() {
-        synchronized (actions) {
+        synchronized (lock) {
             terminated = true;
-            actions.addLast(null);
-            actions.notifyAll();
+            lock.notifyAll();
         }
         try {
             thread.join();
         } catch (Throwable t) {
-            Logger.getLogger(BDJActionQueue.class.getName()).error("Error joining thread: " + t);
+            logger.error("Error joining thread: " + t);
         }
+
+        logger.info(toString());
     }
 
     public void run() {
         while (true) {
-            Object action;
-            synchronized (actions) {
-                while (actions.isEmpty()) {
+            Node node;
+            synchronized (lock) {
+                while (head == null && !terminated) {
+                    consumerWaiting = true;
                     try {
-                        actions.wait();
+                        lock.wait();
                     } catch (InterruptedException e) {
                     }
+                    consumerWaiting = false;
+                }
+                if (head == null) {
+                    return;
+                }
+                node = unlinkFirst();
+                if (blockedProducers > 0) {
+                    lock.notifyAll();
                 }
-                action = actions.removeFirst();
             }
-            if (action == null)
-                return;
+
+            long start = System.currentTimeMillis();
             try {
-                ((BDJAction)action).process();
+                node.action.process();
             } catch (Throwable e) {
                 e.printStackTrace();
             }
+            long end = System.currentTimeMillis();
+
+            synchronized (stats) {
+                long latency = start - node.time;
+                long runTime = end - start;
+                processed++;
+                totalLatency += latency;
+                totalRunTime += runTime;
+                if (latency > maxLatency) maxLatency = latency;
+                if (runTime > maxRunTime) maxRunTime = runTime;
+            }
         }
     }
 
     public void put(BDJAction action) {
-        if (action != null) {
-            synchronized (actions) {
-                if (!terminated) {
-                    actions.addLast(action);
-                    actions.notifyAll();
+        if (action == null) {
+            return;
+        }
+
+        Node node = new Node(action);
+        BDJAction dropped = null;
+        boolean stopped;
+
+        synchronized (lock) {
+            if (capacity > 0) {
+                while (!terminated && size >= capacity) {
+                    if (overflowPolicy == OVERFLOW_DROP_NEWEST) {
+                        dropped = action;
+                        break;
+                    }
+                    if (overflowPolicy == OVERFLOW_DROP_OLDEST) {
+                        dropped = unlinkFirst().action;
+                        break;
+                    }
+                    blockedProducers++;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                    }
+                    blockedProducers--;
+                }
+            }
+
+            stopped = terminated;
+            if (stopped) {
+                dropped = action;
+            } else if (dropped != action) {
+                node.time = System.currentTimeMillis();
+                if (tail == null) {
+                    head = node;
                 } else {
-                    Logger.getLogger(BDJActionQueue.class.getName()).error("Action skipped (queue stopped): " + action);
-                    action.abort();
+                    tail.next = node;
                 }
+                tail = node;
+                size++;
+                enqueued++;
+                if (size > maxDepth) {
+                    maxDepth = size;
+                }
+                if (consumerWaiting) {
+                    lock.notify();
+                }
+            }
+            if (dropped != null) {
+                droppedCount++;
+            }
+        }
+
+        if (dropped != null) {
+            if (stopped) {
+                logger.error("Action skipped (queue stopped): " + dropped);
+            } else {
+                logger.error("Action dropped (queue full): " + dropped);
             }
+            dropped.abort();
         }
     }
 
+    /*
+     * statistics
+     */
+
+    public int getDepth() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    public int getMaxDepth() {
+        synchronized (lock) {
+            return maxDepth;
+        }
+    }
+
+    public int getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    public long getMaxLatency() {
+        synchronized (stats) {
+            return maxLatency;
+        }
+    }
+
+    public long getAverageLatency() {
+        synchronized (stats) {
+            return processed > 0 ? totalLatency / processed : 0;
+        }
+    }
+
+    public long getMaxRunTime() {
+        synchronized (stats) {
+            return maxRunTime;
+        }
+    }
+
+    public long getAverageRunTime() {
+        synchronized (stats) {
+            return processed > 0 ? totalRunTime / processed : 0;
+        }
+    }
+
+    public String toString() {
+        int depth, max, dropped;
+        long n;
+        synchronized (lock) {
+            depth = size;
+            max = maxDepth;
+            dropped = droppedCount;
+            n = enqueued;
+        }
+        return name + ".BDJActionQueue[queued=" + n +
+            ", depth=" + depth + ", max depth=" + max +
+            ", dropped=" + dropped +
+            ", latency avg=" + getAverageLatency() + "ms, max=" + getMaxLatency() + "ms" +
+            ", run time avg=" + getAverageRunTime() + "ms, max=" + getMaxRunTime() + "ms]";
+    }
+
+    /* called with lock held */
+    private Node unlinkFirst() {
+        Node node = head;
+        head = node.next;
+        if (head == null) {
+            tail = null;
+        }
+        node.next = null;
+        size--;
+        return node;
+    }
+
+    private static class Node {
+        Node(BDJAction action) {
+            this.action = action;
+        }
+
+        final BDJAction action;
+        Node next = null;
+        long time;        /* enqueue time */
+    }
+
+    private final String name;
+    private final int capacity;
+    private final int overflowPolicy;
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    private Node head = null;
+    private Node tail = null;
+    private int size = 0;
     private boolean terminated = false;
-    private Thread thread;
-    private LinkedList actions = new LinkedList();
+    private boolean consumerWaiting = false;
+    private int blockedProducers = 0;
+
+    /* statistics. Queue counters are protected by lock, timings by stats. */
+    private final Object stats = new Object();
+    private long enqueued = 0;
+    private int maxDepth = 0;
+    private int droppedCount = 0;
+    private long processed = 0;
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+    private long totalRunTime = 0;
+    private long maxRunTime = 0;
+
+    private static final Logger logger = Logger.getLogger(BDJActionQueue.class.getName());
 }
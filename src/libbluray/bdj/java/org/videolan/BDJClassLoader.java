@@ -27,6 +27,8 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.tv.xlet.Xlet;
 
@@ -101,7 +103,7 @@ public class BDJClassLoader extends URLClassLoader {
         for (int i = 0; i < urls.length; i++)
             classPath.add(urls[i]);
         URL url = translateClassPath(appCaches, basePath, null);
-        if (url != null)
+        if ((url != null) && (classPath.indexOf(url) < 0))
             classPath.add(url);
         String[] classPaths = StrUtil.split(classPathExt, ';');
         for (int i = 0; i < classPaths.length; i++) {
@@ -109,9 +111,44 @@ public class BDJClassLoader extends URLClassLoader {
             if ((url != null) && (classPath.indexOf(url) < 0))
                 classPath.add(url);
         }
-        for (int i = 0; i < classPath.size(); i++)
+        for (int i = urls.length; i < classPath.size(); i++)
             addURL((URL)classPath.get(i));
         this.xletClass = xletClass;
+
+        synchronized (this) {
+            index = null;
+            misses.clear();
+        }
+    }
+
+    /*
+     * Look up resource from JAR indexes.
+     * Returns index of class path URL containing the resource,
+     * NOT_FOUND, or UNKNOWN if class path contains non-indexed URLs.
+     */
+    private static final int NOT_FOUND = -1;
+    private static final int UNKNOWN   = -2;
+
+    private synchronized int lookup(String name) {
+        URL[] urls = getURLs();
+        if (index == null || index.length != urls.length) {
+            index = new Set[urls.length];
+            for (int i = 0; i < urls.length; i++)
+                index[i] = ResourceIndex.getEntries(urls[i]);
+        }
+        for (int i = 0; i < index.length; i++) {
+            if (index[i] == null)
+                return UNKNOWN;
+            if (index[i].contains(name))
+                return i;
+        }
+        return NOT_FOUND;
+    }
+
+    protected Class findClass(String name) throws ClassNotFoundException {
+        if (lookup(name.replace('.', '/') + ".class") == NOT_FOUND)
+            throw new ClassNotFoundException(name);
+        return super.findClass(name);
     }
 
     public Class loadClass(String name) throws java.lang.ClassNotFoundException {
@@ -128,7 +165,17 @@ public class BDJClassLoader extends URLClassLoader {
 
     public URL getResource(String name) {
         name = name.replace('\\', '/');
-        return super.getResource(name);
+        synchronized (this) {
+            if (misses.contains(name))
+                return null;
+        }
+        URL url = super.getResource(name);
+        if (url == null) {
+            synchronized (this) {
+                misses.add(name);
+            }
+        }
+        return url;
     }
 
     /* final in J2ME
@@ -140,6 +187,15 @@ public class BDJClassLoader extends URLClassLoader {
 
     public URL findResource(String name) {
         name = name.replace('\\', '/');
+        int i = lookup(name);
+        if (i == NOT_FOUND)
+            return null;
+        if (i >= 0) {
+            try {
+                return new URL("jar:" + getURLs()[i] + "!/" + name);
+            } catch (MalformedURLException e) {
+            }
+        }
         return super.findResource(name);
     }
 
@@ -154,4 +210,9 @@ public class BDJClassLoader extends URLClassLoader {
     }
 
     private String xletClass;
+
+    /* JAR indexes of class path URLs (null for non-indexed URLs) */
+    private Set[] index = null;
+    /* negative getResource() cache */
+    private Set misses = new HashSet();
 }
@@ -389,6 +389,8 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
 
         org.dvb.io.ixc.IxcRegistry.unbindAll(this);
 
+        java.awt.BDToolkit.releaseContext(this);
+
         if (sceneFactory != null) {
             sceneFactory.dispose();
             sceneFactory = null;
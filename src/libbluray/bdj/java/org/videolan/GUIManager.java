@@ -79,6 +79,22 @@ public class GUIManager extends BDRootWindow {
         }
     }
 
+    /* called when video frame (PTS) is updated */
+    protected static void videoFrameTick() {
+        GUIManager gui = instance;
+        if (gui != null) {
+            gui.frameTick();
+        }
+    }
+
+    /* called when video stream changes */
+    protected static void videoFrameRate(float fps) {
+        GUIManager gui = instance;
+        if (gui != null) {
+            gui.setFrameRate(fps);
+        }
+    }
+
     public void dispose() {
         try {
             super.dispose();
@@ -136,6 +136,9 @@ public class Libbluray {
             BDJLoader.shutdown();
             BDJActionManager.shutdown();
             MountManager.unmountAll();
+            ResourceIndex.clear();
+            TextLayoutCache.clear();
+            clearFrameRates();
             GUIManager.shutdown();
             BDToolkit.shutdownDisc();
             java.awt.BDFontMetrics.shutdown();
@@ -386,9 +389,12 @@ public class Libbluray {
             break;
         case BDJ_EVENT_PLAYITEM:
             PlayerManager.getInstance().onPlayItemReach(param);
+            updateVideoFrameRate(param);
             break;
         case BDJ_EVENT_PLAYLIST:
             PlayerManager.getInstance().onPlaylistStart(param);
+            loadFrameRates(param);
+            updateVideoFrameRate(readPSR(PSR_PLAYITEM));
             break;
         case BDJ_EVENT_ANGLE:
             PlayerManager.getInstance().onAngleChange(param);
@@ -414,6 +420,7 @@ public class Libbluray {
             break;
         case BDJ_EVENT_PTS:
             PlayerManager.getInstance().onPlaylistTime(param);
+            GUIManager.videoFrameTick();
             break;
         case BDJ_EVENT_VK_KEY:
             //case KeyEvent.KEY_TYPED:
@@ -459,6 +466,51 @@ public class Libbluray {
         return result;
     }
 
+    /*
+     * Video frame rate of each playitem in current playlist.
+     * Playlist is parsed only when playlist changes, not at every playitem boundary.
+     */
+
+    private static void loadFrameRates(int playlist) {
+        float[] rates = null;
+        PlaylistInfo pi = getPlaylistInfo(playlist);
+        if (pi != null) {
+            TIClip[] clips = pi.getClips();
+            rates = new float[clips.length];
+            for (int i = 0; i < clips.length; i++) {
+                StreamInfo[] streams = clips[i].getVideoStreams();
+                if (streams != null && streams.length > 0) {
+                    rates[i] = streams[0].getFrameRate();
+                }
+            }
+        }
+        synchronized (frameRateLock) {
+            frameRates = rates;
+        }
+    }
+
+    private static void clearFrameRates() {
+        synchronized (frameRateLock) {
+            frameRates = null;
+        }
+    }
+
+    private static void updateVideoFrameRate(int playitem) {
+        float fps;
+        synchronized (frameRateLock) {
+            if (frameRates == null || playitem < 0 || playitem >= frameRates.length)
+                return;
+            fps = frameRates[playitem];
+        }
+        if (fps <= 0.0f)
+            return;
+        VideoClock.getInstance().setFrameRate(fps);
+        GUIManager.videoFrameRate(fps);
+    }
+
+    private static final Object frameRateLock = new Object();
+    private static float[] frameRates = null;
+
     public static void setUOMask(boolean menuCallMask, boolean titleSearchMask) {
         setUOMaskN(nativePointer, menuCallMask, titleSearchMask);
     }
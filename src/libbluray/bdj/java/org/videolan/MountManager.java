@@ -24,11 +24,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import org.videolan.Logger;
@@ -36,10 +38,22 @@ import org.videolan.Logger;
 /**
  * This class handle mounting jar files so that their contents can be accessed.
  *
+ * By default JAR contents are not extracted. Files under the mount point are
+ * served directly from the JAR file (see java.io.BDFileSystem and
+ * java.io.FileInputStream), and extracted to the mount directory only when
+ * a real file is needed.
+ * Setting property bluray.vfs.jar_extract to "true" extracts whole JAR at mount time.
+ *
  * @author William Hahne
  *
  */
 public class MountManager {
+
+    /* getAttributes() return values */
+    public static final int NOT_FOUND = 0;
+    public static final int FILE      = 1;
+    public static final int DIRECTORY = 2;
+
     public static String mount(int jarId) throws MountException {
         String jarStr = jarIdToString(jarId);
 
@@ -64,6 +78,7 @@ public class MountManager {
             tmpDir = File.createTempFile("bdj-", "");
         } catch (IOException e) {
             e.printStackTrace();
+            closeJar(jar);
             throw new MountException();
         }
 
@@ -71,43 +86,24 @@ public class MountManager {
         tmpDir.delete();
         tmpDir.mkdir();
 
-        try {
-            byte[] buffer = new byte[32*1024];
-            Enumeration entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = (JarEntry)entries.nextElement();
-                File out = new File(tmpDir + File.separator + entry.getName());
-
-                logger.info("   mount: " + entry.getName());
-
-                if (entry.isDirectory()) {
-                    out.mkdirs();
-                } else {
-                    /* make sure path exists */
-                    out.getParentFile().mkdirs();
-
-                    InputStream inStream = jar.getInputStream(entry);
-                    OutputStream outStream = new FileOutputStream(out);
-
-                    int length;
-                    while ((length = inStream.read(buffer)) > 0) {
-                        outStream.write(buffer, 0, length);
-                    }
+        MountPoint mountPoint = new MountPoint(tmpDir, jar);
 
-                    inStream.close();
-                    outStream.close();
-                }
+        if ("true".equals(System.getProperty("bluray.vfs.jar_extract"))) {
+            try {
+                mountPoint.extractAll();
+            } catch (IOException e) {
+                e.printStackTrace();
+                mountPoint.remove();
+                throw new MountException();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            recursiveDelete(tmpDir);
-            throw new MountException();
+        } else {
+            mountPoint.index();
         }
 
         logger.info("Mounting JAR " + jarId + " complete.");
 
-        mountPoints.put(new Integer(jarId), tmpDir);
-        return tmpDir.getAbsolutePath();
+        mountPoints.put(new Integer(jarId), mountPoint);
+        return mountPoint.getPath();
         }
     }
 
@@ -115,13 +111,13 @@ public class MountManager {
         logger.info("Unmounting JAR: " + jarId);
 
         Integer id = new Integer(jarId);
-        File mountPoint;
+        MountPoint mountPoint;
 
         synchronized (mountPoints) {
-            mountPoint = (File)mountPoints.remove(id);
+            mountPoint = (MountPoint)mountPoints.remove(id);
         }
         if (mountPoint != null) {
-            recursiveDelete(mountPoint);
+            mountPoint.remove();
         } else {
             logger.info("JAR " + jarId + " not mounted");
         }
@@ -138,32 +134,120 @@ public class MountManager {
         }
         if (dirs != null) {
             for (int i = 0; i < dirs.length; i++) {
-                recursiveDelete((File)dirs[i]);
+                ((MountPoint)dirs[i]).remove();
             }
         }
     }
 
     public static String getMount(int jarId) {
         Integer id = new Integer(jarId);
-        File mountPoint;
+        MountPoint mountPoint;
 
         synchronized (mountPoints) {
-            mountPoint = (File)mountPoints.get(id);
+            mountPoint = (MountPoint)mountPoints.get(id);
         }
         if (mountPoint != null) {
-            return mountPoint.getAbsolutePath();
+            return mountPoint.getPath();
         } else {
             logger.info("JAR " + jarId + " not mounted");
         }
         return null;
     }
 
+    /*
+     * Access to files inside mounted (not extracted) JAR files.
+     * Paths must be absolute.
+     */
+
+    /* FILE, DIRECTORY or NOT_FOUND (path is not inside mounted JAR, or file has not been indexed) */
+    public static int getAttributes(String path) {
+        MountPoint mp = findMountPoint(path);
+        if (mp == null)
+            return NOT_FOUND;
+        return mp.getAttributes(mp.getEntryName(path));
+    }
+
+    /* -1 if path is not file inside mounted JAR */
+    public static long getLength(String path) {
+        JarEntry entry = findEntry(path);
+        if (entry == null)
+            return -1;
+        return entry.getSize();
+    }
+
+    /* -1 if path is not file inside mounted JAR */
+    public static long getLastModifiedTime(String path) {
+        JarEntry entry = findEntry(path);
+        if (entry == null)
+            return -1;
+        return entry.getTime();
+    }
+
+    /* null if path is not directory inside mounted JAR */
+    public static String[] list(String path) {
+        MountPoint mp = findMountPoint(path);
+        if (mp == null)
+            return null;
+        return mp.list(mp.getEntryName(path));
+    }
+
+    /* null if path is not file inside mounted JAR */
+    public static InputStream openStream(String path) throws IOException {
+        MountPoint mp = findMountPoint(path);
+        if (mp == null)
+            return null;
+        return mp.openStream(mp.getEntryName(path));
+    }
+
+    /* make sure file exists in file system. Returns false if path is not file inside mounted JAR. */
+    public static boolean extract(String path) {
+        MountPoint mp = findMountPoint(path);
+        if (mp == null)
+            return false;
+        try {
+            return mp.extract(mp.getEntryName(path));
+        } catch (IOException e) {
+            logger.error("Extracting " + path + " failed: " + e);
+            return false;
+        }
+    }
+
+    private static MountPoint findMountPoint(String path) {
+        if (path == null)
+            return null;
+        synchronized (mountPoints) {
+            Iterator it = mountPoints.values().iterator();
+            while (it.hasNext()) {
+                MountPoint mp = (MountPoint)it.next();
+                if (mp.contains(path))
+                    return mp;
+            }
+        }
+        return null;
+    }
+
+    private static JarEntry findEntry(String path) {
+        MountPoint mp = findMountPoint(path);
+        if (mp == null)
+            return null;
+        return mp.getEntry(mp.getEntryName(path));
+    }
+
     private static String jarIdToString(int jarId) {
         if (jarId < 0 || jarId > 99999)
             return null;
         return BDJUtil.makeFiveDigitStr(jarId);
     }
 
+    private static void closeJar(JarFile jar) {
+        if (jar != null) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
     private static void recursiveDelete(File dir) {
         File[] files = dir.listFiles();
         for (int i = 0; i < files.length; i++) {
@@ -178,6 +262,176 @@ public class MountManager {
         dir.delete();
     }
 
+    private static class MountPoint {
+        MountPoint(File dir, JarFile jar) {
+            this.dir = dir;
+            this.path = dir.getAbsolutePath();
+            this.jar = jar;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        boolean contains(String p) {
+            return jar != null && p.startsWith(path) &&
+                (p.length() == path.length() || p.charAt(path.length()) == File.separatorChar);
+        }
+
+        /* path relative to mount point, using '/' as separator */
+        String getEntryName(String p) {
+            if (p.length() <= path.length())
+                return "";
+            return p.substring(path.length() + 1).replace(File.separatorChar, '/');
+        }
+
+        /* build index of JAR entries. Nothing is extracted. */
+        synchronized void index() {
+            Enumeration entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = (JarEntry)entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    addDirectory(name.substring(0, name.length() - 1));
+                } else {
+                    files.put(name, entry);
+                    int i = name.lastIndexOf('/');
+                    addDirectory(i > 0 ? name.substring(0, i) : "");
+                }
+            }
+            logger.info("   indexed " + files.size() + " files");
+        }
+
+        synchronized void extractAll() throws IOException {
+            Enumeration entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = (JarEntry)entries.nextElement();
+                File out = new File(dir + File.separator + entry.getName());
+
+                logger.info("   mount: " + entry.getName());
+
+                if (entry.isDirectory()) {
+                    out.mkdirs();
+                } else {
+                    /* make sure path exists */
+                    out.getParentFile().mkdirs();
+                    extract(entry, out);
+                }
+            }
+
+            /* everything is in file system now */
+            closeJar(jar);
+            jar = null;
+        }
+
+        synchronized void remove() {
+            closeJar(jar);
+            jar = null;
+            files.clear();
+            dirs.clear();
+            extracted.clear();
+            recursiveDelete(dir);
+        }
+
+        synchronized int getAttributes(String name) {
+            if (dirs.contains(name))
+                return DIRECTORY;
+            if (files.containsKey(name))
+                return FILE;
+            return NOT_FOUND;
+        }
+
+        synchronized JarEntry getEntry(String name) {
+            return (JarEntry)files.get(name);
+        }
+
+        synchronized String[] list(String name) {
+            if (!dirs.contains(name))
+                return null;
+
+            String prefix = name.length() > 0 ? name + "/" : "";
+            ArrayList result = new ArrayList();
+            addChildren(result, dirs.iterator(), prefix);
+            addChildren(result, files.keySet().iterator(), prefix);
+            return (String[])result.toArray(new String[result.size()]);
+        }
+
+        InputStream openStream(String name) throws IOException {
+            JarFile j;
+            JarEntry entry;
+            synchronized (this) {
+                j = jar;
+                entry = (JarEntry)files.get(name);
+            }
+            if (j == null || entry == null)
+                return null;
+            return j.getInputStream(entry);
+        }
+
+        synchronized boolean extract(String name) throws IOException {
+            JarEntry entry = (JarEntry)files.get(name);
+            if (jar == null || entry == null)
+                return false;
+
+            if (!extracted.contains(name)) {
+                logger.info("   extract: " + name);
+
+                /* File.mkdirs() can't be used: directories exist in JAR index */
+                int i = 0;
+                while ((i = name.indexOf('/', i + 1)) > 0) {
+                    new File(dir + File.separator + name.substring(0, i)).mkdir();
+                }
+
+                extract(entry, new File(dir + File.separator + name));
+                extracted.add(name);
+            }
+            return true;
+        }
+
+        private void extract(JarEntry entry, File out) throws IOException {
+            InputStream inStream = jar.getInputStream(entry);
+            OutputStream outStream = new FileOutputStream(out);
+
+            try {
+                byte[] buffer = new byte[32*1024];
+                int length;
+                while ((length = inStream.read(buffer)) > 0) {
+                    outStream.write(buffer, 0, length);
+                }
+            } finally {
+                inStream.close();
+                outStream.close();
+            }
+        }
+
+        private void addDirectory(String name) {
+            while (name.length() > 0 && dirs.add(name)) {
+                int i = name.lastIndexOf('/');
+                name = i > 0 ? name.substring(0, i) : "";
+            }
+            dirs.add("");
+        }
+
+        private static void addChildren(ArrayList result, Iterator names, String prefix) {
+            while (names.hasNext()) {
+                String name = (String)names.next();
+                if (name.length() > prefix.length() && name.startsWith(prefix) &&
+                    name.indexOf('/', prefix.length()) < 0) {
+                    result.add(name.substring(prefix.length()));
+                }
+            }
+        }
+
+        private final File dir;
+        private final String path;
+        private JarFile jar;
+        /* JAR index: file name -> JarEntry, directory names */
+        private Map files = new HashMap();
+        private Set dirs = new HashSet();
+        /* files extracted on demand */
+        private Set extracted = new HashSet();
+    }
+
     private static Map mountPoints = new HashMap();
     private static final Logger logger = Logger.getLogger(MountManager.class.getName());
 }
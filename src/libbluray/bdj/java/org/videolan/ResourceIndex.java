@@ -0,0 +1,109 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/*
+ * Index of entry names in disc JAR files.
+ *
+ * Index of each JAR file is built once and shared by all class loaders
+ * created for the disc. Index is dropped when disc is closed.
+ */
+
+class ResourceIndex {
+
+    /* null if url is not a local JAR file */
+    static Set getEntries(URL url) {
+        if (!"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) {
+            return null;
+        }
+
+        final File file = new File(url.getPath());
+        final String key = file.getPath();
+
+        synchronized (indexes) {
+            Set entries = (Set)indexes.get(key);
+            if (entries != null) {
+                return entries;
+            }
+
+            entries = (Set)AccessController.doPrivileged(
+                new PrivilegedAction() {
+                    public Object run() {
+                        return buildIndex(file);
+                    }
+                });
+            if (entries != null) {
+                indexes.put(key, entries);
+            }
+            return entries;
+        }
+    }
+
+    static void clear() {
+        synchronized (indexes) {
+            indexes.clear();
+        }
+    }
+
+    private static Set buildIndex(File file) {
+        JarFile jar = null;
+        try {
+            jar = new JarFile(file);
+            Set entries = new HashSet();
+            Enumeration e = jar.entries();
+            while (e.hasMoreElements()) {
+                JarEntry entry = (JarEntry)e.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.add(entry.getName());
+                }
+            }
+            logger.info("Indexed " + entries.size() + " entries in " + file);
+            return entries;
+        } catch (IOException e) {
+            logger.error("Error indexing " + file + ": " + e);
+            return null;
+        } finally {
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /* JAR file path -> Set of entry names */
+    private static final Map indexes = new HashMap();
+
+    private static final Logger logger = Logger.getLogger(ResourceIndex.class.getName());
+}
@@ -128,6 +128,26 @@ public class StreamInfo {
         return rate;
     }
 
+    /* video frame rate (frames / second), 0 if unknown */
+    public float getFrameRate() {
+        switch (rate) {
+        case (byte)0x01:
+            return 24000.0f / 1001.0f;
+        case (byte)0x02:
+            return 24.0f;
+        case (byte)0x03:
+            return 25.0f;
+        case (byte)0x04:
+            return 30000.0f / 1001.0f;
+        case (byte)0x06:
+            return 50.0f;
+        case (byte)0x07:
+            return 60000.0f / 1001.0f;
+        default:
+            return 0.0f;
+        }
+    }
+
     public char getChar_code() {
         return char_code;
     }
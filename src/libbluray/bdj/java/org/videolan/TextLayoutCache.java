@@ -0,0 +1,309 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Cache of measured text layouts.
+ *
+ * Layout holds line breaks, line widths and baselines of a text block.
+ * Layouts depend only on text, font, wrapping width and spacing, so
+ * alignment inside the component is just integer arithmetic and text
+ * is measured only once (HAVi and DVB text layout managers).
+ */
+
+public class TextLayoutCache {
+
+    /* no wrapping */
+    public static final int NO_WRAP = -1;
+
+    private static final int MAX_ENTRIES = 256;
+
+    public static class Layout {
+
+        public int getLineCount() {
+            return lines.length;
+        }
+
+        public String getLine(int i) {
+            return lines[i];
+        }
+
+        public int getLineWidth(int i) {
+            return widths[i];
+        }
+
+        /* baseline of line, relative to top of text block */
+        public int getBaseline(int i) {
+            return ascent + i * lineHeight;
+        }
+
+        /* width of widest line */
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            if (lines.length < 1) {
+                return 0;
+            }
+            return (lines.length - 1) * lineHeight + ascent + descent;
+        }
+
+        /* true if some word was broken because it did not fit to wrapping width */
+        public boolean isClipped() {
+            return clipped;
+        }
+
+        public void drawLine(Graphics g, int i, int x, int y) {
+            if (letterSpace == 0 && lines[i].indexOf('\t') < 0) {
+                g.drawString(lines[i], x, y);
+                return;
+            }
+            FontMetrics fm = g.getFontMetrics(font);
+            String line = lines[i];
+            int start = x;
+            for (int c = 0; c < line.length(); c++) {
+                char ch = line.charAt(c);
+                if (ch == '\t') {
+                    x = nextTab(x - start, fm) + start;
+                    continue;
+                }
+                g.drawString(String.valueOf(ch), x, y);
+                x += fm.charWidth(ch) + letterSpace;
+            }
+        }
+
+        /*
+         *
+         */
+
+        private Layout(Font font, int lineHeight, int letterSpace, int tabSpace) {
+            this.font = font;
+            this.lineHeight = lineHeight;
+            this.letterSpace = letterSpace;
+            this.tabSpace = tabSpace;
+        }
+
+        private int measure(String s, FontMetrics fm) {
+            if (letterSpace == 0 && s.indexOf('\t') < 0) {
+                return fm.stringWidth(s);
+            }
+            int x = 0;
+            int segment = 0;
+            for (int c = 0; c <= s.length(); c++) {
+                if (c == s.length() || s.charAt(c) == '\t') {
+                    if (c > segment) {
+                        x += fm.stringWidth(s.substring(segment, c)) + letterSpace * (c - segment);
+                    }
+                    if (c < s.length()) {
+                        x = nextTab(x, fm);
+                    }
+                    segment = c + 1;
+                }
+            }
+            return x;
+        }
+
+        private int nextTab(int x, FontMetrics fm) {
+            int tab = tabSpace > 0 ? tabSpace : fm.charWidth(' ') * 8;
+            if (tab <= 0) {
+                return x;
+            }
+            return (x / tab + 1) * tab;
+        }
+
+        private void addLine(ArrayList lineList, ArrayList widthList, String line, FontMetrics fm) {
+            int w = measure(line, fm);
+            lineList.add(line);
+            widthList.add(new Integer(w));
+        }
+
+        private void layout(String text, FontMetrics fm, int wrapWidth) {
+            ArrayList lineList = new ArrayList();
+            ArrayList widthList = new ArrayList();
+            String[] paragraphs = StrUtil.split(text, '\n');
+
+            for (int p = 0; p < paragraphs.length; p++) {
+                String para = paragraphs[p];
+                if (wrapWidth < 0 || measure(para, fm) <= wrapWidth) {
+                    addLine(lineList, widthList, para, fm);
+                    continue;
+                }
+                wrap(para, fm, wrapWidth, lineList, widthList);
+            }
+
+            lines = (String[])lineList.toArray(new String[lineList.size()]);
+            widths = new int[lines.length];
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = ((Integer)widthList.get(i)).intValue();
+                width = Math.max(width, widths[i]);
+            }
+        }
+
+        /* break paragraph at spaces. Words longer than line are broken between characters. */
+        private void wrap(String para, FontMetrics fm, int wrapWidth, ArrayList lineList, ArrayList widthList) {
+            int len = para.length();
+            int start = 0;
+            while (start < len) {
+                int end = start;
+                int fits = -1;
+                while (end < len) {
+                    int next = para.indexOf(' ', end + 1);
+                    if (next < 0) {
+                        next = len;
+                    }
+                    if (measure(para.substring(start, next), fm) > wrapWidth) {
+                        break;
+                    }
+                    fits = next;
+                    end = next;
+                }
+
+                if (fits < 0) {
+                    /* first word does not fit */
+                    int wordEnd = para.indexOf(' ', start);
+                    if (wordEnd < 0) {
+                        wordEnd = len;
+                    }
+                    fits = start + 1;
+                    while (fits < wordEnd && measure(para.substring(start, fits + 1), fm) <= wrapWidth) {
+                        fits++;
+                    }
+                    clipped = true;
+                }
+
+                addLine(lineList, widthList, para.substring(start, fits), fm);
+
+                /* skip spaces at line break */
+                start = fits;
+                while (start < len && para.charAt(start) == ' ') {
+                    start++;
+                }
+            }
+        }
+
+        private final Font font;
+        private final int lineHeight;
+        private final int letterSpace;
+        private final int tabSpace;
+        private int ascent;
+        private int descent;
+        private String[] lines;
+        private int[] widths;
+        private int width = 0;
+        private boolean clipped = false;
+    }
+
+    /*
+     * Get layout of text.
+     * lineSpace is distance between baselines; if negative, font height is used.
+     */
+    public static Layout getLayout(String text, Font font, FontMetrics fm, int wrapWidth,
+                                   int lineSpace, int letterSpace, int tabSpace) {
+        if (wrapWidth < 0) {
+            wrapWidth = NO_WRAP;
+        }
+        Key key = new Key(text, font, wrapWidth, lineSpace, letterSpace, tabSpace);
+
+        synchronized (cache) {
+            Layout layout = (Layout)cache.get(key);
+            if (layout != null) {
+                return layout;
+            }
+        }
+
+        int lineHeight = lineSpace >= 0 ? lineSpace : fm.getHeight();
+        Layout layout = new Layout(font, lineHeight, letterSpace, tabSpace);
+        layout.ascent = fm.getAscent();
+        layout.descent = Math.abs(fm.getDescent()) + fm.getLeading();
+        layout.layout(text, fm, wrapWidth);
+
+        synchronized (cache) {
+            cache.put(key, layout);
+            /* drop least recently used layouts */
+            Iterator it = cache.values().iterator();
+            while (cache.size() > MAX_ENTRIES && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return layout;
+    }
+
+    /* drop all layouts (disc fonts are unloaded) */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static class Key {
+        Key(String text, Font font, int wrapWidth, int lineSpace, int letterSpace, int tabSpace) {
+            this.text = text;
+            this.font = font;
+            this.wrapWidth = wrapWidth;
+            this.lineSpace = lineSpace;
+            this.letterSpace = letterSpace;
+            this.tabSpace = tabSpace;
+            int h = text.hashCode();
+            h = h * 31 + (font != null ? font.hashCode() : 0);
+            h = h * 31 + wrapWidth;
+            h = h * 31 + lineSpace;
+            h = h * 31 + letterSpace;
+            h = h * 31 + tabSpace;
+            this.hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return hash == k.hash &&
+                wrapWidth == k.wrapWidth && lineSpace == k.lineSpace &&
+                letterSpace == k.letterSpace && tabSpace == k.tabSpace &&
+                text.equals(k.text) &&
+                (font == null ? k.font == null : font.equals(k.font));
+        }
+
+        private final String text;
+        private final Font font;
+        private final int wrapWidth;
+        private final int lineSpace;
+        private final int letterSpace;
+        private final int tabSpace;
+        private final int hash;
+    }
+
+    /* Key -> Layout, in access order */
+    private static final Map cache = new LinkedHashMap(64, 0.75f, true);
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2014  libbluray
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+/*
+ * Clock of presented video.
+ *
+ * Clock time is in 45 kHz ticks (PSR_TIME). It follows PTS of presented
+ * video frames. Time is extrapolated from system clock between PTS updates,
+ * and when video is not playing. Clock is continuous: it does not jump
+ * when PTS jumps (seek, playlist or clip change).
+ */
+
+public class VideoClock {
+
+    public static final int TICKS_PER_SECOND = 45000;
+
+    /* no PTS updates for this long -> video is not playing */
+    private static final long STALL_MS = 250;
+
+    /* PTS jumps larger than this are discontinuities */
+    private static final long MAX_JUMP = TICKS_PER_SECOND;
+
+    private static final VideoClock instance = new VideoClock();
+
+    public static VideoClock getInstance() {
+        return instance;
+    }
+
+    /* PTS of presented video frame (PSR_TIME, 45 kHz) */
+    public void update(int pts) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long expected = getTime(now);
+            long time = (pts & 0xffffffffL) + ptsOffset;
+
+            if (!valid || Math.abs(time - expected) > MAX_JUMP) {
+                ptsOffset = expected - (pts & 0xffffffffL);
+                time = expected;
+            }
+
+            /* clock never runs backwards */
+            if (time > lastTime || !valid) {
+                lastTime = time;
+            }
+            lastUpdate = now;
+            updateCount++;
+            valid = true;
+            notifyAll();
+        }
+    }
+
+    /* frame rate of current video stream */
+    public synchronized void setFrameRate(float fps) {
+        frameRate = fps;
+    }
+
+    /* frame rate of video, 0 if unknown */
+    public synchronized float getFrameRate() {
+        return frameRate;
+    }
+
+    /* true if video frames are being presented */
+    public synchronized boolean isPlaying() {
+        return valid && System.currentTimeMillis() - lastUpdate < STALL_MS;
+    }
+
+    /* current time (45 kHz ticks) */
+    public synchronized long getTime() {
+        long time = getTime(System.currentTimeMillis());
+        /* extrapolated time may be ahead of next PTS */
+        if (time < lastReturned) {
+            time = lastReturned;
+        }
+        lastReturned = time;
+        return time;
+    }
+
+    /*
+     * Wait for next PTS update.
+     * Returns false if there was no update before timeout.
+     */
+    public synchronized boolean waitUpdate(long timeoutMs) throws InterruptedException {
+        long count = updateCount;
+        long end = System.currentTimeMillis() + timeoutMs;
+        while (count == updateCount) {
+            long left = end - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    private long getTime(long now) {
+        if (!valid) {
+            return now * (TICKS_PER_SECOND / 1000);
+        }
+        return lastTime + (now - lastUpdate) * (TICKS_PER_SECOND / 1000);
+    }
+
+    private boolean valid = false;
+    private long    ptsOffset = 0;
+    private long    lastTime = 0;
+    private long    lastUpdate = 0;
+    private long    lastReturned = 0;
+    private long    updateCount = 0;
+    private float   frameRate = 0.0f;
+}
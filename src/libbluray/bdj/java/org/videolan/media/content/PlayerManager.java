@@ -20,6 +20,8 @@ package org.videolan.media.content;
 
 import java.util.ArrayList;
 
+import org.videolan.VideoClock;
+
 public class PlayerManager {
 
     private static PlayerManager instance = new PlayerManager();
@@ -117,6 +119,15 @@ public class PlayerManager {
      *
      */
 
+    /* media time of playlist player, or -1 if there is no playlist player */
+    public long getPlaylistMediaNanoseconds() {
+        synchronized (playlistPlayerLock) {
+            if (playlistPlayer == null)
+                return -1;
+            return playlistPlayer.getMediaNanoseconds();
+        }
+    }
+
     public void onPlaylistEnd(int playlist) {
         synchronized (playlistPlayerLock) {
             if (playlistPlayer != null)
@@ -125,6 +136,7 @@ public class PlayerManager {
     }
 
     public void onPlaylistTime(int pts) {
+        VideoClock.getInstance().update(pts);
         synchronized (playlistPlayerLock) {
             if (playlistPlayer != null)
                 playlistPlayer.updateTime(pts);
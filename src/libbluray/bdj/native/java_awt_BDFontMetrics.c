@@ -23,6 +23,10 @@
 
 #include <jni.h>
 
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
 #include "util/logging.h"
 
 #ifdef HAVE_FT2
@@ -73,14 +77,12 @@ Java_java_awt_BDFontMetrics_destroyN(JNIEnv * env, jclass cls, jlong ftLib)
 }
 
 JNIEXPORT jlong JNICALL
-Java_java_awt_BDFontMetrics_loadFontN(JNIEnv * env, jobject obj, jlong ftLib, jstring fontName, jint size)
+Java_java_awt_BDFontMetrics_loadFaceN(JNIEnv * env, jclass cls, jlong ftLib, jstring fontName)
 {
 #ifdef HAVE_FT2
     const char *name;
     FT_Face ftFace;
     FT_Error result;
-    jclass cls;
-    jfieldID fid;
     FT_Library lib = (FT_Library)(intptr_t)ftLib;
 
     if (!lib) {
@@ -88,21 +90,13 @@ Java_java_awt_BDFontMetrics_loadFontN(JNIEnv * env, jobject obj, jlong ftLib, js
     }
 
     name = (*env)->GetStringUTFChars(env, fontName, NULL);
+    if (!name) {
+        return 0;
+    }
     result = FT_New_Face(lib, name, 0, &ftFace);
     (*env)->ReleaseStringUTFChars(env, fontName, name);
     if (result)
         return 0;
-    FT_Set_Char_Size(ftFace, 0, size << 6, 0, 0);
-
-    cls = (*env)->GetObjectClass(env, obj);
-    fid = (*env)->GetFieldID(env, cls, "ascent", "I");
-    (*env)->SetIntField (env, obj, fid, ftFace->size->metrics.ascender >> 6);
-    fid = (*env)->GetFieldID(env, cls, "descent", "I");
-    (*env)->SetIntField (env, obj, fid, -ftFace->size->metrics.descender >> 6);
-    fid = (*env)->GetFieldID(env, cls, "leading", "I");
-    (*env)->SetIntField (env, obj, fid, (ftFace->size->metrics.height - ftFace->size->metrics.ascender + ftFace->size->metrics.descender) >> 6);
-    fid = (*env)->GetFieldID(env, cls, "maxAdvance", "I");
-    (*env)->SetIntField (env, obj, fid, ftFace->size->metrics.max_advance >> 6);
 
     return (jlong)(intptr_t)ftFace;
 #else  /* HAVE_FT2 */
@@ -111,7 +105,7 @@ Java_java_awt_BDFontMetrics_loadFontN(JNIEnv * env, jobject obj, jlong ftLib, js
 }
 
 JNIEXPORT void JNICALL
-Java_java_awt_BDFontMetrics_destroyFontN(JNIEnv *env, jobject obj, jlong ftFace)
+Java_java_awt_BDFontMetrics_destroyFaceN(JNIEnv *env, jclass cls, jlong ftFace)
 {
 #ifdef HAVE_FT2
     FT_Face face = (FT_Face)(intptr_t)ftFace;
@@ -124,93 +118,247 @@ Java_java_awt_BDFontMetrics_destroyFontN(JNIEnv *env, jobject obj, jlong ftFace)
 #endif
 }
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_charWidthN(JNIEnv * env, jobject obj, jlong ftFace, jchar c)
+/*
+ * Create new size object for face.
+ * Font metrics of the size are stored to BDFontMetrics object.
+ */
+JNIEXPORT jlong JNICALL
+Java_java_awt_BDFontMetrics_newSizeN(JNIEnv * env, jobject obj, jlong ftFace, jint size)
 {
 #ifdef HAVE_FT2
     FT_Face face = (FT_Face)(intptr_t)ftFace;
+    FT_Size ftSize;
+    jclass cls;
+    jfieldID fid;
 
     if (!face) {
         return 0;
     }
 
-    if (FT_Load_Char(face, c, FT_LOAD_DEFAULT))
+    if (FT_New_Size(face, &ftSize))
         return 0;
-    return face->glyph->metrics.horiAdvance >> 6;
-#else
+    if (FT_Activate_Size(ftSize) || FT_Set_Char_Size(face, 0, size << 6, 0, 0)) {
+        FT_Done_Size(ftSize);
+        return 0;
+    }
+
+    cls = (*env)->GetObjectClass(env, obj);
+    fid = (*env)->GetFieldID(env, cls, "ascent", "I");
+    (*env)->SetIntField (env, obj, fid, ftSize->metrics.ascender >> 6);
+    fid = (*env)->GetFieldID(env, cls, "descent", "I");
+    (*env)->SetIntField (env, obj, fid, -ftSize->metrics.descender >> 6);
+    fid = (*env)->GetFieldID(env, cls, "leading", "I");
+    (*env)->SetIntField (env, obj, fid, (ftSize->metrics.height - ftSize->metrics.ascender + ftSize->metrics.descender) >> 6);
+    fid = (*env)->GetFieldID(env, cls, "maxAdvance", "I");
+    (*env)->SetIntField (env, obj, fid, ftSize->metrics.max_advance >> 6);
+    fid = (*env)->GetFieldID(env, cls, "hasKerning", "Z");
+    (*env)->SetBooleanField (env, obj, fid, FT_HAS_KERNING(face) ? JNI_TRUE : JNI_FALSE);
+
+    return (jlong)(intptr_t)ftSize;
+#else  /* HAVE_FT2 */
     return 0;
+#endif /* HAVE_FT2 */
+}
+
+JNIEXPORT void JNICALL
+Java_java_awt_BDFontMetrics_destroySizeN(JNIEnv *env, jclass cls, jlong ftSize)
+{
+#ifdef HAVE_FT2
+    FT_Size size = (FT_Size)(intptr_t)ftSize;
+
+    if (!size) {
+        return;
+    }
+
+    FT_Done_Size(size);
 #endif
 }
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_stringWidthN(JNIEnv * env, jobject obj, jlong ftFace, jstring string)
+#ifdef HAVE_FT2
+/* select size for following operations. Face is shared by all sizes. */
+static FT_Face _activate_size(jlong ftSize)
+{
+    FT_Size size = (FT_Size)(intptr_t)ftSize;
+
+    if (!size || FT_Activate_Size(size)) {
+        return NULL;
+    }
+    return size->face;
+}
+#endif
+
+/*
+ * Get advance widths of characters first ... first + count - 1.
+ */
+JNIEXPORT void JNICALL
+Java_java_awt_BDFontMetrics_charWidthsN(JNIEnv * env, jclass cls, jlong ftSize, jint first,
+                                        jint count, jintArray widths)
 {
 #ifdef HAVE_FT2
-    jsize length;
-    const jchar *chars;
-    jint i, width;
-    FT_Face face = (FT_Face)(intptr_t)ftFace;
+    FT_Face face = _activate_size(ftSize);
+    jint *w;
+    jint i;
 
-    if (!face) {
-        return 0;
+    if (!face || count <= 0) {
+        return;
     }
 
-    length = (*env)->GetStringLength(env, string);
-    if (length <= 0)
-        return 0;
-    chars = (*env)->GetStringCritical(env, string, NULL);
-    if (chars == NULL)
-        return 0;
+    w = (jint *)calloc(count, sizeof(jint));
+    if (!w) {
+        return;
+    }
 
-    for (i = 0, width = 0; i < length; i++) {
-        if (FT_Load_Char(face, chars[i], FT_LOAD_DEFAULT) == 0) {
-            width += face->glyph->metrics.horiAdvance >> 6;
+    for (i = 0; i < count; i++) {
+        if (FT_Load_Char(face, first + i, FT_LOAD_DEFAULT) == 0) {
+            w[i] = face->glyph->metrics.horiAdvance >> 6;
         }
     }
 
-    (*env)->ReleaseStringCritical(env, string, chars);
+    (*env)->SetIntArrayRegion(env, widths, 0, count, w);
+    free(w);
+#endif /* HAVE_FT2 */
+}
 
-    return width;
+/*
+ * Get horizontal kerning of character pairs.
+ * pairs[] holds count pairs of (left, right) characters.
+ */
+JNIEXPORT void JNICALL
+Java_java_awt_BDFontMetrics_kerningN(JNIEnv * env, jclass cls, jlong ftSize, jcharArray pairArray,
+                                     jint count, jintArray kerning)
+{
+#ifdef HAVE_FT2
+    FT_Face face = _activate_size(ftSize);
+    jchar *pairs;
+    jint *k;
+    jint i;
 
-#else  /* HAVE_FT2 */
-    return 0;
+    if (!face || count <= 0) {
+        return;
+    }
+
+    pairs = (jchar *)malloc(sizeof(jchar) * 2 * count);
+    k = (jint *)calloc(count, sizeof(jint));
+    if (!pairs || !k) {
+        goto out;
+    }
+    (*env)->GetCharArrayRegion(env, pairArray, 0, 2 * count, pairs);
+    if ((*env)->ExceptionCheck(env)) {
+        goto out;
+    }
+
+    if (FT_HAS_KERNING(face)) {
+        for (i = 0; i < count; i++) {
+            FT_Vector delta;
+            FT_UInt left  = FT_Get_Char_Index(face, pairs[2 * i]);
+            FT_UInt right = FT_Get_Char_Index(face, pairs[2 * i + 1]);
+            if (left && right && !FT_Get_Kerning(face, left, right, FT_KERNING_DEFAULT, &delta)) {
+                k[i] = delta.x >> 6;
+            }
+        }
+    }
+
+    (*env)->SetIntArrayRegion(env, kerning, 0, count, k);
+
+ out:
+    free(pairs);
+    free(k);
 #endif /* HAVE_FT2 */
 }
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_charsWidthN(JNIEnv * env, jobject obj, jlong ftFace, jcharArray charArray,
-                                                jint offset, jint length)
+/*
+ * Render glyphs of all characters with single call.
+ * Glyph masks (8-bit alpha, width * height bytes) are returned in one array.
+ * metrics[] receives 6 values for each glyph: left, top, width, height, advance, mask offset.
+ */
+JNIEXPORT jbyteArray JNICALL
+Java_java_awt_BDFontMetrics_loadGlyphsN(JNIEnv * env, jclass cls, jlong ftSize, jcharArray charArray,
+                                        jint count, jintArray metrics)
 {
 #ifdef HAVE_FT2
-    jchar *chars;
-    jint i, width;
-    FT_Face face = (FT_Face)(intptr_t)ftFace;
-
-    if (!face) {
-        return 0;
+    FT_Face face = _activate_size(ftSize);
+    jchar *chars = NULL;
+    jint *m = NULL;
+    uint8_t *buf = NULL;
+    size_t buf_size = 0, buf_used = 0;
+    jbyteArray masks = NULL;
+    jint i, j;
+
+    if (!face || count <= 0) {
+        return NULL;
     }
 
-    chars = (jchar *)malloc(sizeof(jchar) * length);
-    if (chars == NULL)
-        return 0;
-    (*env)->GetCharArrayRegion(env, charArray, offset, length, chars);
+    chars = (jchar *)malloc(sizeof(jchar) * count);
+    m = (jint *)calloc(count * 6, sizeof(jint));
+    if (!chars || !m) {
+        goto out;
+    }
+    (*env)->GetCharArrayRegion(env, charArray, 0, count, chars);
     if ((*env)->ExceptionCheck(env)) {
-        free(chars);
-        return 0;
+        goto out;
     }
 
-    for (i = 0, width = 0; i < length; i++) {
-        if (FT_Load_Char(face, chars[i], FT_LOAD_DEFAULT) == 0) {
-            width += face->glyph->metrics.horiAdvance >> 6;
+    for (i = 0; i < count; i++) {
+        jint *gm = m + i * 6;
+        FT_Bitmap *bitmap;
+        size_t size;
+
+        gm[5] = (jint)buf_used;
+
+        if (FT_Load_Char(face, chars[i], FT_LOAD_RENDER)) {
+            continue;
+        }
+
+        bitmap = &face->glyph->bitmap;
+        gm[4] = face->glyph->metrics.horiAdvance >> 6;
+
+        if (bitmap->rows <= 0 || bitmap->width <= 0) {
+            continue;
+        }
+        if (bitmap->pixel_mode != FT_PIXEL_MODE_GRAY) {
+            BD_DEBUG(DBG_BDJ | DBG_CRIT, "loadGlyphsN(): unsupported pixel mode %d\n", bitmap->pixel_mode);
+            continue;
+        }
+
+        size = (size_t)bitmap->width * bitmap->rows;
+        if (buf_used + size > buf_size) {
+            size_t new_size = (buf_used + size) * 2;
+            uint8_t *tmp = (uint8_t *)realloc(buf, new_size);
+            if (!tmp) {
+                goto out;
+            }
+            buf = tmp;
+            buf_size = new_size;
         }
+
+        for (j = 0; j < (jint)bitmap->rows; j++) {
+            memcpy(buf + buf_used + j * bitmap->width, bitmap->buffer + j * bitmap->pitch, bitmap->width);
+        }
+
+        gm[0] = face->glyph->bitmap_left;
+        gm[1] = face->glyph->bitmap_top;
+        gm[2] = bitmap->width;
+        gm[3] = bitmap->rows;
+        buf_used += size;
     }
 
-    free(chars);
+    masks = (*env)->NewByteArray(env, (jsize)buf_used);
+    if (masks == NULL) {
+        goto out;
+    }
+    if (buf_used > 0) {
+        (*env)->SetByteArrayRegion(env, masks, 0, (jsize)buf_used, (const jbyte *)buf);
+    }
+    (*env)->SetIntArrayRegion(env, metrics, 0, count * 6, m);
 
-    return width;
+ out:
+    free(buf);
+    free(m);
+    free(chars);
+    return masks;
 
 #else  /* HAVE_FT2 */
-    return 0;
+    return NULL;
 #endif /* HAVE_FT2 */
 }
 
@@ -231,29 +379,39 @@ Java_java_awt_BDFontMetrics_methods[] =
         VC(Java_java_awt_BDFontMetrics_destroyN),
     },
     {
-        CC("loadFontN"),
-        CC("(JLjava/lang/String;I)J"),
-        VC(Java_java_awt_BDFontMetrics_loadFontN),
+        CC("loadFaceN"),
+        CC("(JLjava/lang/String;)J"),
+        VC(Java_java_awt_BDFontMetrics_loadFaceN),
+    },
+    {
+        CC("destroyFaceN"),
+        CC("(J)V"),
+        VC(Java_java_awt_BDFontMetrics_destroyFaceN),
+    },
+    {
+        CC("newSizeN"),
+        CC("(JI)J"),
+        VC(Java_java_awt_BDFontMetrics_newSizeN),
     },
     {
-        CC("destroyFontN"),
+        CC("destroySizeN"),
         CC("(J)V"),
-        VC(Java_java_awt_BDFontMetrics_destroyFontN),
+        VC(Java_java_awt_BDFontMetrics_destroySizeN),
     },
     {
-        CC("charWidthN"),
-        CC("(JC)I"),
-        VC(Java_java_awt_BDFontMetrics_charWidthN),
+        CC("charWidthsN"),
+        CC("(JII[I)V"),
+        VC(Java_java_awt_BDFontMetrics_charWidthsN),
     },
     {
-        CC("stringWidthN"),
-        CC("(JLjava/lang/String;)I"),
-        VC(Java_java_awt_BDFontMetrics_stringWidthN),
+        CC("kerningN"),
+        CC("(J[CI[I)V"),
+        VC(Java_java_awt_BDFontMetrics_kerningN),
     },
     {
-        CC("charsWidthN"),
-        CC("(J[CII)I"),
-        VC(Java_java_awt_BDFontMetrics_charsWidthN),
+        CC("loadGlyphsN"),
+        CC("(J[CI[I)[B"),
+        VC(Java_java_awt_BDFontMetrics_loadGlyphsN),
     },
 };
 
@@ -32,43 +32,59 @@ JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_destroyN
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    loadFontN
- * Signature: (JLjava/lang/String;I)J
+ * Method:    loadFaceN
+ * Signature: (JLjava/lang/String;)J
  */
-JNIEXPORT jlong JNICALL Java_java_awt_BDFontMetrics_loadFontN
-  (JNIEnv *, jobject, jlong, jstring, jint);
+JNIEXPORT jlong JNICALL Java_java_awt_BDFontMetrics_loadFaceN
+  (JNIEnv *, jclass, jlong, jstring);
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    destroyFontN
+ * Method:    destroyFaceN
  * Signature: (J)V
  */
-JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_destroyFontN
-  (JNIEnv *, jobject, jlong);
+JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_destroyFaceN
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     java_awt_BDFontMetrics
+ * Method:    newSizeN
+ * Signature: (JI)J
+ */
+JNIEXPORT jlong JNICALL Java_java_awt_BDFontMetrics_newSizeN
+  (JNIEnv *, jobject, jlong, jint);
+
+/*
+ * Class:     java_awt_BDFontMetrics
+ * Method:    destroySizeN
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_destroySizeN
+  (JNIEnv *, jclass, jlong);
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    charWidthN
- * Signature: (JC)I
+ * Method:    charWidthsN
+ * Signature: (JII[I)V
  */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_charWidthN
-  (JNIEnv *, jobject, jlong, jchar);
+JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_charWidthsN
+  (JNIEnv *, jclass, jlong, jint, jint, jintArray);
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    stringWidthN
- * Signature: (JLjava/lang/String;)I
+ * Method:    kerningN
+ * Signature: (J[CI[I)V
  */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_stringWidthN
-  (JNIEnv *, jobject, jlong, jstring);
+JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_kerningN
+  (JNIEnv *, jclass, jlong, jcharArray, jint, jintArray);
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    charsWidthN
- * Signature: (J[CII)I
+ * Method:    loadGlyphsN
+ * Signature: (J[CI[I)[B
  */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_charsWidthN
-  (JNIEnv *, jobject, jlong, jcharArray, jint, jint);
+JNIEXPORT jbyteArray JNICALL Java_java_awt_BDFontMetrics_loadGlyphsN
+  (JNIEnv *, jclass, jlong, jcharArray, jint, jintArray);
 
 #ifdef __cplusplus
 }
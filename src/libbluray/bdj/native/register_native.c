@@ -25,11 +25,9 @@ int bdj_register_native_methods(JNIEnv *env)
 {
     extern const JNINativeMethod Java_org_videolan_Logger_methods[];
     extern const JNINativeMethod Java_org_videolan_Libbluray_methods[];
-    extern const JNINativeMethod Java_java_awt_BDGraphics_methods[];
     extern const JNINativeMethod Java_java_awt_BDFontMetrics_methods[];
     extern const int Java_org_videolan_Logger_methods_count;
     extern const int Java_org_videolan_Libbluray_methods_count;
-    extern const int Java_java_awt_BDGraphics_methods_count;
     extern const int Java_java_awt_BDFontMetrics_methods_count;
 
     return
@@ -41,20 +39,14 @@ int bdj_register_native_methods(JNIEnv *env)
                            Java_org_videolan_Libbluray_methods,
                            Java_org_videolan_Libbluray_methods_count)
       *
-      /* BDFontMetrics must be registered before BDGraphics */
       bdj_register_methods(env, "java/awt/BDFontMetrics",
                            Java_java_awt_BDFontMetrics_methods,
                            Java_java_awt_BDFontMetrics_methods_count)
-      *
-      bdj_register_methods(env, "java/awt/BDGraphicsBase",
-                           Java_java_awt_BDGraphics_methods,
-                           Java_java_awt_BDGraphics_methods_count)
       ;
 }
 
 void bdj_unregister_native_methods(JNIEnv *env)
 {
-    bdj_unregister_methods(env, "java/awt/BDGraphicsBase");
     bdj_unregister_methods(env, "java/awt/BDFontMetrics");
     bdj_unregister_methods(env, "org/videolan/Libbluray");
     bdj_unregister_methods(env, "org/videolan/Logger");